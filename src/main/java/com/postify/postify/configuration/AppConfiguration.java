@@ -1,7 +1,10 @@
 package com.postify.postify.configuration;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Data;
 
@@ -16,6 +19,84 @@ public class AppConfiguration {
 	
 	String attachmentsFolder = "attachments";
 
+	int authCacheSize = 10000;
+
+	Duration authCacheTtl = Duration.ofMinutes(5);
+
+	String tokenSecret;
+
+	Duration tokenTtl = Duration.ofHours(1);
+
+	Duration tokenMaxSessionAge = Duration.ofDays(7);
+
+	int userIdCacheSize = 10000;
+
+	Duration userIdMissTtl = Duration.ofSeconds(5);
+
+	int recentPostBufferSize = 1024;
+
+	boolean singleNode = true;
+
+	int postJsonCacheSize = 10000;
+
+	int bulkMaxPosts = 1000;
+
+	int bulkChunkSize = 100;
+
+	int searchCandidateLimit = 10000;
+
+	int tagIndexSize = 10000;
+
+	int tagTimelineSize = 256;
+
+	DataSize maxAttachmentSize = DataSize.ofMegabytes(20);
+
+	DataSize maxProfileImageSize = DataSize.ofMegabytes(5);
+
+	boolean storageMigrationOnStartup = true;
+
+	int storageMigrationThreads = 4;
+
+	DataSize imageCacheSize = DataSize.ofMegabytes(64);
+
+	DataSize imageCacheMaxEntrySize = DataSize.ofKilobytes(512);
+
+	int attachmentCleanupBatchSize = 500;
+
+	int attachmentCleanupMaxPerRun = 20000;
+
+	int attachmentCleanupThreads = 4;
+
+	Duration attachmentLease = Duration.ofHours(1);
+
+	int attachmentCleanupPartitions = 1;
+
+	int nodeId;
+
+	Duration jobLockAtMost = Duration.ofMinutes(30);
+
+	Duration jobLockAtLeast = Duration.ofMinutes(5);
+
+	Duration streamTimeout = Duration.ofMinutes(30);
+
+	int streamQueueCapacity = 64;
+
+	int streamDispatchThreads = 4;
+
+	Duration streamWriteTimeout = Duration.ofSeconds(5);
+
+	boolean imageProcessingEnabled = true;
+
+	int imageWorkerThreads = 2;
+
+	int imageQueueCapacity = 256;
+
+	Duration imageJobLease = Duration.ofMinutes(10);
+
+	int imageThumbnailSize = 128;
+
+	int imageMediumSize = 800;
+
 	public String getFullProfileImagesPath() {
 		return this.uploadPath + "/" + this.profileImagesFolder;
 	}
@@ -0,0 +1,37 @@
+package com.postify.postify.configuration;
+
+import com.postify.postify.service.CredentialCache;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+
+	CredentialCache credentialCache;
+
+	public CachingAuthenticationProvider(CredentialCache credentialCache) {
+		super();
+		this.credentialCache = credentialCache;
+	}
+
+	@Override
+	public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+		Object credentials = authentication.getCredentials();
+		if(credentials == null) {
+			return super.authenticate(authentication);
+		}
+
+		String key = credentialCache.keyFor(authentication.getName(), credentials.toString());
+		UserDetails cached = credentialCache.get(key);
+		if(cached != null) {
+			return createSuccessAuthentication(cached, authentication, cached);
+		}
+
+		long generation = credentialCache.generation();
+		Authentication result = super.authenticate(authentication);
+		credentialCache.put(key, (UserDetails) result.getPrincipal(), generation);
+		return result;
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.postify.postify.configuration;
+
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.postify.postify.util.TimeOrderedIdGenerator;
+
+@Configuration
+public class PersistenceConfiguration {
+
+	@Bean
+	HibernatePropertiesCustomizer nodeIdCustomizer(AppConfiguration appConfiguration) {
+		return (properties) -> properties.put(TimeOrderedIdGenerator.NODE_ID_SETTING, String.valueOf(appConfiguration.getNodeId()));
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.postify.postify.configuration;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.service.PostJsonCache;
+import org.springframework.boot.jackson.JsonComponent;
+
+@JsonComponent
+public class PostVMSerializer extends JsonSerializer<PostVM> {
+
+	PostJsonCache postJsonCache;
+
+	public PostVMSerializer(PostJsonCache postJsonCache) {
+		super();
+		this.postJsonCache = postJsonCache;
+	}
+
+	@Override
+	public void serialize(PostVM post, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+		generator.writeRawValue(postJsonCache.getJson(post));
+	}
+
+}
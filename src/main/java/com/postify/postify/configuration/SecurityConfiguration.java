@@ -1,6 +1,8 @@
 package com.postify.postify.configuration;
 
 import com.postify.postify.service.AuthUserService;
+import com.postify.postify.service.CredentialCache;
+import com.postify.postify.service.TokenService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
@@ -12,6 +14,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -19,6 +22,12 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter{
 	
 	@Autowired
     AuthUserService authUserService;
+
+	@Autowired
+	CredentialCache credentialCache;
+
+	@Autowired
+	TokenService tokenService;
 	
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
@@ -27,11 +36,15 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter{
 		http.headers().disable();
 
 		http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
+
+		http.addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
 		
 		http
 			.authorizeRequests()
 				.antMatchers(HttpMethod.POST, "/api/1.0/login").authenticated()
+				.antMatchers(HttpMethod.POST, "/api/1.0/login/refresh").authenticated()
 				.antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}").authenticated()
+				.antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}/image").authenticated()
 				.antMatchers(HttpMethod.POST, "/api/1.0/posts/**").authenticated()
 				.antMatchers(HttpMethod.DELETE, "/api/1.0/posts/{id:[0-9]+}").authenticated()
 			.and()
@@ -42,7 +55,14 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter{
 
 	@Override
 	protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-		auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
+		auth.authenticationProvider(authenticationProvider());
+	}
+
+	private CachingAuthenticationProvider authenticationProvider() {
+		CachingAuthenticationProvider provider = new CachingAuthenticationProvider(credentialCache);
+		provider.setUserDetailsService(authUserService);
+		provider.setPasswordEncoder(passwordEncoder());
+		return provider;
 	}
 	
 	@Bean
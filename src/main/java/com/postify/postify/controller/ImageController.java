@@ -0,0 +1,135 @@
+package com.postify.postify.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.postify.postify.exception.NotFoundException;
+import com.postify.postify.model.StoredImage;
+import com.postify.postify.service.ImageService;
+import com.postify.postify.util.ByteRange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+@RestController
+public class ImageController {
+
+	private static final String CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).getHeaderValue();
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	@Autowired
+	ImageService imageService;
+
+	@GetMapping("/images/{folder}/{name:.+}")
+	void getImage(@PathVariable String folder, @PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		StoredImage image = imageService.find(folder, name);
+		if(image == null) {
+			throw new NotFoundException("Image not found");
+		}
+		response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		if(new ServletWebRequest(request, response).checkNotModified(image.getETag(), image.getLastModified())) {
+			return;
+		}
+		response.setContentType(image.getContentType());
+
+		ByteRange range = requestedRange(request, image);
+		if(range == ByteRange.UNSATISFIABLE) {
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.getSize());
+			return;
+		}
+		if(range == null) {
+			range = ByteRange.full(image.getSize());
+		} else {
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(image.getSize()));
+		}
+		response.setContentLengthLong(range.getLength());
+		if(HttpMethod.HEAD.matches(request.getMethod()) || range.getLength() == 0) {
+			return;
+		}
+		send(request, response, image, range);
+	}
+
+	private ByteRange requestedRange(HttpServletRequest request, StoredImage image) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if(ifRange != null && !matchesIfRange(request, ifRange, image)) {
+			return null;
+		}
+		return ByteRange.parse(request.getHeader(HttpHeaders.RANGE), image.getSize());
+	}
+
+	private boolean matchesIfRange(HttpServletRequest request, String ifRange, StoredImage image) {
+		if(ifRange.startsWith("\"")) {
+			return ifRange.equals(image.getETag());
+		}
+		if(ifRange.startsWith("W/")) {
+			return false;
+		}
+		try {
+			return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == image.getLastModified() / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private void send(HttpServletRequest request, HttpServletResponse response, StoredImage image, ByteRange range) throws IOException {
+		ByteBuffer cached = imageService.load(image);
+		if(cached != null) {
+			cached.position((int) range.getStart()).limit((int) range.getEnd() + 1);
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			while(cached.hasRemaining()) {
+				out.write(cached);
+			}
+			return;
+		}
+		if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			request.setAttribute(SENDFILE_FILENAME, image.getPath().toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, range.getStart());
+			request.setAttribute(SENDFILE_END, range.getEnd() + 1);
+			return;
+		}
+		// without sendfile the servlet stream is not a file descriptor, so this is a plain buffered copy
+		try (FileChannel channel = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+			OutputStream out = response.getOutputStream();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, range.getLength()));
+			long position = range.getStart();
+			long remaining = range.getLength();
+			while(remaining > 0) {
+				buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+				int read = channel.read(buffer, position);
+				if(read <= 0) {
+					break;
+				}
+				out.write(buffer.array(), 0, read);
+				position += read;
+				remaining -= read;
+			}
+		}
+	}
+
+}
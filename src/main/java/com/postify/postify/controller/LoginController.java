@@ -1,9 +1,12 @@
 package com.postify.postify.controller;
 
+import com.postify.postify.model.AccessToken;
+import com.postify.postify.model.AuthUser;
+import com.postify.postify.model.LoginVM;
+import com.postify.postify.service.TokenService;
 import com.postify.postify.validation.constraint.CurrentUser;
-import com.postify.postify.model.UserVM;
-import com.postify.postify.entity.User;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -11,10 +14,18 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class LoginController {
 	
+	@Autowired
+	TokenService tokenService;
+	
 	@PostMapping("/api/1.0/login")
-    UserVM handleLogin(@CurrentUser User loggedInUser) {
+    LoginVM handleLogin(@CurrentUser AuthUser loggedInUser) {
 		log.info("user login", loggedInUser.toString());
-		return new UserVM(loggedInUser);
+		return new LoginVM(loggedInUser, tokenService.createToken(loggedInUser));
+	}
+	
+	@PostMapping("/api/1.0/login/refresh")
+	AccessToken refreshToken(@CurrentUser AuthUser loggedInUser) {
+		return tokenService.refreshToken(loggedInUser);
 	}
 	
 }
@@ -2,18 +2,23 @@ package com.postify.postify.controller;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.validation.Valid;
 
+import com.postify.postify.model.AuthUser;
+import com.postify.postify.model.BulkPostResultVM;
+import com.postify.postify.model.FeedVM;
 import com.postify.postify.model.PostVM;
 import com.postify.postify.entity.Post;
 import com.postify.postify.service.PostService;
 import com.postify.postify.validation.constraint.CurrentUser;
 import com.postify.postify.model.GenericResponse;
+import com.postify.postify.util.FeedCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -24,8 +29,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import com.postify.postify.entity.User;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/1.0")
@@ -35,21 +40,86 @@ public class PostController {
 	PostService postService;
 
 	@PostMapping("/posts")
-	PostVM createPost(@Valid @RequestBody Post post, @CurrentUser User user) {
+	PostVM createPost(@Valid @RequestBody Post post, @CurrentUser AuthUser user) {
 		return new PostVM(postService.save(user, post));
 	}
 	
+	@PostMapping("/posts/bulk")
+	List<BulkPostResultVM> createPosts(@RequestBody List<Post> posts, @CurrentUser AuthUser user) {
+		return postService.saveAll(user, posts);
+	}
+	
 	@GetMapping("/posts")
-	Page<PostVM> getAllPosts(Pageable pageable) {
-		return postService.getAllPosts(pageable).map(PostVM::new);
+	Page<PostVM> getAllPosts(Pageable pageable, WebRequest request) {
+		if(request.checkNotModified(postService.getPostsTag(null))) {
+			return null;
+		}
+		return postService.getAllPosts(pageable);
 	}
 	
 	@GetMapping("/users/{username}/posts")
-	Page<PostVM> getPostsOfUser(@PathVariable String username, Pageable pageable) {
-		return postService.getPostsOfUser(username, pageable).map(PostVM::new);
+	Page<PostVM> getPostsOfUser(@PathVariable String username, Pageable pageable, WebRequest request) {
+		if(request.checkNotModified(postService.getPostsTag(username))) {
+			return null;
+		}
+		return postService.getPostsOfUser(username, pageable);
 		
 	}
 	
+	@GetMapping({"/posts/feed", "/users/{username}/posts/feed"})
+	FeedVM getFeed(@PathVariable(required = false) String username,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "10") int size) {
+		Slice<PostVM> posts = postService.getFeed(username, FeedCursor.decode(cursor), size);
+		List<PostVM> content = posts.getContent();
+		String nextCursor = posts.hasNext() ? FeedCursor.encode(content.get(content.size() - 1).getId()) : null;
+		return new FeedVM(content, nextCursor);
+	}
+	
+	@GetMapping("/posts/search")
+	FeedVM searchPosts(@RequestParam(name = "q") String query,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "10") int size) {
+		return postService.search(query, cursor, size);
+	}
+	
+	@GetMapping("/tags/{tag}/posts")
+	FeedVM getTagFeed(@PathVariable String tag,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "10") int size) {
+		return postService.getTagFeed(tag, FeedCursor.decode(cursor), size);
+	}
+	
+	@GetMapping("/tags/{tag}/posts/{id:[0-9]+}")
+	ResponseEntity<?> getTagPostsRelative(@PathVariable String tag, @PathVariable long id, Pageable pageable,
+			@RequestParam(name="direction", defaultValue="after") String direction) {
+		if(!direction.equalsIgnoreCase("after")) {
+			return ResponseEntity.ok(postService.getOldTagPosts(tag, id, pageable));
+		}
+		return ResponseEntity.ok(postService.getNewTagPosts(tag, id, pageable.getSort()));
+	}
+	
+	@GetMapping("/users/{username}/mentions")
+	FeedVM getMentionFeed(@PathVariable String username,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "10") int size) {
+		return postService.getMentionFeed(username, FeedCursor.decode(cursor), size);
+	}
+	
+	@GetMapping("/users/{username}/mentions/{id:[0-9]+}")
+	ResponseEntity<?> getMentionsRelative(@PathVariable String username, @PathVariable long id, Pageable pageable,
+			@RequestParam(name="direction", defaultValue="after") String direction) {
+		if(!direction.equalsIgnoreCase("after")) {
+			return ResponseEntity.ok(postService.getOldMentions(username, id, pageable));
+		}
+		return ResponseEntity.ok(postService.getNewMentions(username, id, pageable.getSort()));
+	}
+	
+	@GetMapping(path = {"/posts/stream", "/users/{username}/posts/stream"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	SseEmitter streamPosts(@PathVariable(required = false) String username) {
+		return postService.subscribe(username);
+	}
+	
 	@GetMapping({"/posts/{id:[0-9]+}", "/users/{username}/posts/{id:[0-9]+}"}) 
 	ResponseEntity<?> getPostsRelative(@PathVariable long id,
 			@PathVariable(required= false) String username,
@@ -58,7 +128,7 @@ public class PostController {
 			@RequestParam(name="count", defaultValue="false", required=false) boolean count
 			) {
 		if(!direction.equalsIgnoreCase("after")) {			
-			return ResponseEntity.ok(postService.getOldPosts(id, username, pageable).map(PostVM::new));
+			return ResponseEntity.ok(postService.getOldPosts(id, username, pageable));
 		}
 		
 		if(count == true) {
@@ -66,8 +136,7 @@ public class PostController {
 			return ResponseEntity.ok(Collections.singletonMap("count", newPostCount));
 		}
 		
-		List<PostVM> newPosts = postService.getNewPosts(id, username, pageable).stream()
-				.map(PostVM::new).collect(Collectors.toList());
+		List<PostVM> newPosts = postService.getNewPosts(id, username, pageable);
 		return ResponseEntity.ok(newPosts);
 	}
 	
@@ -3,6 +3,7 @@ package com.postify.postify.controller;
 import javax.validation.Valid;
 
 import com.postify.postify.entity.User;
+import com.postify.postify.model.AuthUser;
 import com.postify.postify.validation.constraint.CurrentUser;
 import com.postify.postify.model.GenericResponse;
 import com.postify.postify.model.UserUpdateVM;
@@ -17,7 +18,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.postify.postify.model.UserVM;
 
@@ -35,12 +39,15 @@ public class UserController {
 	}
 	
 	@GetMapping("/users")
-	Page<UserVM> getUsers(@CurrentUser User loggedInUser, Pageable page) {
-		return userService.getUsers(loggedInUser, page).map(UserVM::new);
+	Page<UserVM> getUsers(@CurrentUser AuthUser loggedInUser, Pageable page) {
+		return userService.getUsers(loggedInUser, page);
 	}
 	
 	@GetMapping("/users/{username}")
-	UserVM getUserByName(@PathVariable String username) {
+	UserVM getUserByName(@PathVariable String username, WebRequest request) {
+		if(request.checkNotModified(userService.getUserTag(username))) {
+			return null;
+		}
 		User user = userService.getByUsername(username);
 		return new UserVM(user);
 	}
@@ -51,4 +58,11 @@ public class UserController {
 		User updated = userService.update(id, userUpdate);
 		return new UserVM(updated);
 	}
+	
+	@PutMapping("/users/{id:[0-9]+}/image")
+	@PreAuthorize("#id == principal.id")
+	UserVM updateUserImage(@PathVariable long id, @RequestParam("image") MultipartFile image) {
+		User updated = userService.updateImage(id, image);
+		return new UserVM(updated);
+	}
 }
@@ -0,0 +1,32 @@
+package com.postify.postify.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+@Table(indexes = {@Index(columnList = "expiresAt"), @Index(columnList = "nodeId, attachmentId")})
+public class AttachmentLease {
+
+	@Id
+	private long attachmentId;
+
+	private String name;
+
+	private long expiresAt;
+
+	private int nodeId;
+
+	public AttachmentLease(long attachmentId, String name, long expiresAt, int nodeId) {
+		this.attachmentId = attachmentId;
+		this.name = name;
+		this.expiresAt = expiresAt;
+		this.nodeId = nodeId;
+	}
+}
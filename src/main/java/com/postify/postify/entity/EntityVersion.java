@@ -0,0 +1,25 @@
+package com.postify.postify.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+public class EntityVersion {
+
+	public static final String POSTS = "posts";
+
+	@Id
+	private String name;
+
+	private long version;
+
+	public EntityVersion(String name, long version) {
+		this.name = name;
+		this.version = version;
+	}
+}
@@ -5,18 +5,23 @@ import java.util.Date;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
+import com.postify.postify.util.TimeOrderedIdGenerator;
+
 import lombok.Data;
 
 @Data
 @Entity
+@Table(indexes = @Index(columnList = "name"))
 public class FileAttachment {
 	
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
 	private long id;
 
 	@Temporal(TemporalType.TIMESTAMP)
@@ -26,6 +31,10 @@ public class FileAttachment {
 	
 	private String fileType;
 	
+	private String thumbnail;
+	
+	private String medium;
+	
 	@OneToOne
 	private Post post;
 }
@@ -0,0 +1,39 @@
+package com.postify.postify.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+import com.postify.postify.util.TimeOrderedIdGenerator;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+public class ImageJob {
+
+	public static final String PROFILE = "profile";
+
+	public static final String ATTACHMENT = "attachment";
+
+	@Id
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+	private long id;
+
+	private String kind;
+
+	private String name;
+
+	private int attempts;
+
+	private String owner;
+
+	private long leasedUntil;
+
+	public ImageJob(String kind, String name) {
+		this.kind = kind;
+		this.name = name;
+	}
+}
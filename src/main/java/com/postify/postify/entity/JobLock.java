@@ -0,0 +1,26 @@
+package com.postify.postify.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@NoArgsConstructor
+public class JobLock {
+
+	@Id
+	private String name;
+
+	private String owner;
+
+	private long fencingToken;
+
+	private long lockedUntil;
+
+	public JobLock(String name) {
+		this.name = name;
+	}
+}
@@ -13,6 +13,8 @@ import javax.persistence.TemporalType;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
+import com.postify.postify.util.TimeOrderedIdGenerator;
+
 import lombok.Data;
 
 @Data
@@ -20,7 +22,7 @@ import lombok.Data;
 public class Post {
 	
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
 	private long id;
 
 	@NotNull
@@ -0,0 +1,34 @@
+package com.postify.postify.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.postify.postify.util.TimeOrderedIdGenerator;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(indexes = {@Index(columnList = "tag, postId"), @Index(columnList = "postId")})
+public class PostTag {
+	
+	@Id
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
+	private long id;
+	
+	private long postId;
+	
+	@Column(length = 65)
+	private String tag;
+	
+	public PostTag(long postId, String tag) {
+		this.postId = postId;
+		this.tag = tag;
+	}
+}
@@ -1,35 +1,30 @@
 package com.postify.postify.entity;
 
-import java.beans.Transient;
-import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
+import com.postify.postify.util.TimeOrderedIdGenerator;
 import com.postify.postify.validation.constraint.UniqueUsername;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.AuthorityUtils;
-import org.springframework.security.core.userdetails.UserDetails;
 
 import lombok.Data;
 
 @Data
 @Entity
-public class User implements UserDetails{
+@Table(indexes = @Index(columnList = "image"))
+public class User {
 
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 4074374728582967483L;
-	
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = TimeOrderedIdGenerator.NAME)
 	private long id;
 	
 	@NotNull(message = "{postify.constraints.username.NotNull.message}")
@@ -48,37 +43,16 @@ public class User implements UserDetails{
 	
 	private String image;
 	
+	private String imageThumbnail;
+	
+	private String imageMedium;
+	
+	private long credentialVersion;
+	
+	@Column(updatable = false)
+	private long profileVersion;
+	
 	@OneToMany(mappedBy = "user")
 	private List<Post> posts;
 
-	@Override
-	@Transient
-	public Collection<? extends GrantedAuthority> getAuthorities() {
-		return AuthorityUtils.createAuthorityList("Role_USER");
-	}
-
-	@Override
-	@Transient
-	public boolean isAccountNonExpired() {
-		return true;
-	}
-
-	@Override
-	@Transient
-	public boolean isAccountNonLocked() {
-		return true;
-	}
-
-	@Override
-	@Transient
-	public boolean isCredentialsNonExpired() {
-		return true;
-	}
-
-	@Override
-	@Transient
-	public boolean isEnabled() {
-		return true;
-	}
-
 }
@@ -0,0 +1,6 @@
+@GenericGenerator(name = TimeOrderedIdGenerator.NAME, strategy = "com.postify.postify.util.TimeOrderedIdGenerator")
+package com.postify.postify.entity;
+
+import org.hibernate.annotations.GenericGenerator;
+
+import com.postify.postify.util.TimeOrderedIdGenerator;
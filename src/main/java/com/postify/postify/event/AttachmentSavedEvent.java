@@ -0,0 +1,14 @@
+package com.postify.postify.event;
+
+import com.postify.postify.entity.FileAttachment;
+
+import lombok.Data;
+
+@Data
+public class AttachmentSavedEvent {
+
+	private final FileAttachment attachment;
+
+	private final long leaseExpiresAt;
+
+}
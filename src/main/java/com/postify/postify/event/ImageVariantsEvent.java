@@ -0,0 +1,12 @@
+package com.postify.postify.event;
+
+import lombok.Data;
+
+@Data
+public class ImageVariantsEvent {
+
+	private final String kind;
+
+	private final String name;
+
+}
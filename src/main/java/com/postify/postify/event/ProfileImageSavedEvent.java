@@ -0,0 +1,10 @@
+package com.postify.postify.event;
+
+import lombok.Data;
+
+@Data
+public class ProfileImageSavedEvent {
+
+	private final String name;
+
+}
@@ -0,0 +1,18 @@
+package com.postify.postify.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 6261502883713947135L;
+
+	public BadRequestException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.postify.postify.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class PayloadTooLargeException extends RuntimeException{
+
+	private static final long serialVersionUID = 4967329526170871623L;
+
+	public PayloadTooLargeException(String message) {
+		super(message);
+	}
+
+}
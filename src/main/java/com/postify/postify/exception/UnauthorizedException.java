@@ -0,0 +1,15 @@
+package com.postify.postify.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNAUTHORIZED)
+public class UnauthorizedException extends RuntimeException{
+
+	private static final long serialVersionUID = 2087946518271357764L;
+
+	public UnauthorizedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.postify.postify.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class AccessToken {
+
+	private String token;
+	
+	private long expiresAt;
+	
+	public AccessToken(String token, long expiresAt) {
+		this.token = token;
+		this.expiresAt = expiresAt;
+	}
+
+}
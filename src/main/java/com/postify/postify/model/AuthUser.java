@@ -0,0 +1,99 @@
+package com.postify.postify.model;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.postify.postify.entity.User;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString(exclude = "password")
+public class AuthUser implements UserDetails, CredentialsContainer {
+
+	private static final long serialVersionUID = -2317437281264923570L;
+
+	private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList("Role_USER");
+
+	private final long id;
+
+	private final String username;
+
+	private final String displayName;
+
+	private final String image;
+
+	private String imageThumbnail;
+
+	private String imageMedium;
+
+	private long credentialVersion;
+
+	private long sessionStartedAt;
+
+	private String password;
+
+	public AuthUser(long id, String username, String displayName, String image, String password) {
+		this.id = id;
+		this.username = username;
+		this.displayName = displayName;
+		this.image = image;
+		this.password = password;
+	}
+
+	public AuthUser(User user) {
+		this(user.getId(), user.getUsername(), user.getDisplayName(), user.getImage(), user.getPassword());
+		this.imageThumbnail = user.getImageThumbnail();
+		this.imageMedium = user.getImageMedium();
+		this.credentialVersion = user.getCredentialVersion();
+	}
+
+	public AuthUser(User user, long sessionStartedAt) {
+		this(user);
+		this.sessionStartedAt = sessionStartedAt;
+	}
+
+	public AuthUser(AuthUser user, long sessionStartedAt) {
+		this(user.id, user.username, user.displayName, user.image, null);
+		this.imageThumbnail = user.imageThumbnail;
+		this.imageMedium = user.imageMedium;
+		this.credentialVersion = user.credentialVersion;
+		this.sessionStartedAt = sessionStartedAt;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return AUTHORITIES;
+	}
+
+	@Override
+	public boolean isAccountNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isAccountNonLocked() {
+		return true;
+	}
+
+	@Override
+	public boolean isCredentialsNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void eraseCredentials() {
+		this.password = null;
+	}
+
+}
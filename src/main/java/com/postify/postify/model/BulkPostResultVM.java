@@ -0,0 +1,35 @@
+package com.postify.postify.model;
+
+import java.util.Map;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class BulkPostResultVM {
+	
+	public static final String CREATED = "CREATED";
+	
+	public static final String INVALID = "INVALID";
+	
+	public static final String FAILED = "FAILED";
+
+	private int index;
+	
+	private String status;
+	
+	private Long id;
+	
+	private String message;
+	
+	private Map<String, String> validationErrors;
+	
+	public BulkPostResultVM(int index, String status, Long id, String message) {
+		this.index = index;
+		this.status = status;
+		this.id = id;
+		this.message = message;
+	}
+
+}
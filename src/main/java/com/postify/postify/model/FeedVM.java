@@ -0,0 +1,21 @@
+package com.postify.postify.model;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class FeedVM {
+	
+	private List<PostVM> content;
+	
+	private String nextCursor;
+	
+	public FeedVM(List<PostVM> content, String nextCursor) {
+		this.setContent(content);
+		this.setNextCursor(nextCursor);
+	}
+
+}
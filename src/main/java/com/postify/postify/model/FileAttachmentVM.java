@@ -12,8 +12,25 @@ public class FileAttachmentVM {
 	
 	private String fileType;
 	
+	private String thumbnail;
+	
+	private String medium;
+	
 	public FileAttachmentVM(FileAttachment fileAttachment) {
 		this.setName(fileAttachment.getName());
 		this.setFileType(fileAttachment.getFileType());
+		this.setThumbnail(fileAttachment.getThumbnail());
+		this.setMedium(fileAttachment.getMedium());
+	}
+	
+	public FileAttachmentVM(String name, String fileType) {
+		this.setName(name);
+		this.setFileType(fileType);
+	}
+	
+	public FileAttachmentVM(String name, String fileType, String thumbnail, String medium) {
+		this(name, fileType);
+		this.setThumbnail(thumbnail);
+		this.setMedium(medium);
 	}
 }
@@ -0,0 +1,22 @@
+package com.postify.postify.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class LoginVM extends UserVM {
+	
+	private String token;
+	
+	private long expiresAt;
+	
+	public LoginVM(AuthUser user, AccessToken accessToken) {
+		super(user);
+		this.setToken(accessToken.getToken());
+		this.setExpiresAt(accessToken.getExpiresAt());
+	}
+
+}
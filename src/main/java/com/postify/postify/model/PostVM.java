@@ -1,5 +1,7 @@
 package com.postify.postify.model;
 
+import java.util.Date;
+
 import com.postify.postify.entity.Post;
 
 import lombok.Data;
@@ -28,5 +30,17 @@ public class PostVM {
 			this.setAttachment(new FileAttachmentVM(post.getAttachment()));
 		}
 	}
+	
+	public PostVM(long id, String content, Date timestamp, long userId, String username, String displayName,
+				  String image, String imageThumbnail, String imageMedium, String attachmentName,
+				  String attachmentFileType, String attachmentThumbnail, String attachmentMedium) {
+		this.setId(id);
+		this.setContent(content);
+		this.setDate(timestamp.getTime());
+		this.setUser(new UserVM(userId, username, displayName, image, imageThumbnail, imageMedium));
+		if(attachmentName != null) {
+			this.setAttachment(new FileAttachmentVM(attachmentName, attachmentFileType, attachmentThumbnail, attachmentMedium));
+		}
+	}
 
 }
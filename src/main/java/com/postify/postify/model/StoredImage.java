@@ -0,0 +1,20 @@
+package com.postify.postify.model;
+
+import java.nio.file.Path;
+
+import lombok.Data;
+
+@Data
+public class StoredImage {
+
+	private final Path path;
+
+	private final long size;
+
+	private final long lastModified;
+
+	private final String eTag;
+
+	private final String contentType;
+
+}
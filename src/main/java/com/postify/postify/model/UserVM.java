@@ -17,11 +17,39 @@ public class UserVM {
 	
 	private String image;
 	
+	private String imageThumbnail;
+	
+	private String imageMedium;
+	
 	public UserVM(User user) {
 		this.setId(user.getId());
 		this.setUsername(user.getUsername());
 		this.setDisplayName(user.getDisplayName());
 		this.setImage(user.getImage());
+		this.setImageThumbnail(user.getImageThumbnail());
+		this.setImageMedium(user.getImageMedium());
+	}
+	
+	public UserVM(long id, String username, String displayName, String image) {
+		this.setId(id);
+		this.setUsername(username);
+		this.setDisplayName(displayName);
+		this.setImage(image);
+	}
+	
+	public UserVM(long id, String username, String displayName, String image, String imageThumbnail, String imageMedium) {
+		this(id, username, displayName, image);
+		this.setImageThumbnail(imageThumbnail);
+		this.setImageMedium(imageMedium);
+	}
+	
+	public UserVM(AuthUser user) {
+		this.setId(user.getId());
+		this.setUsername(user.getUsername());
+		this.setDisplayName(user.getDisplayName());
+		this.setImage(user.getImage());
+		this.setImageThumbnail(user.getImageThumbnail());
+		this.setImageMedium(user.getImageMedium());
 	}
 
 }
@@ -0,0 +1,25 @@
+package com.postify.postify.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.postify.postify.entity.AttachmentLease;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface AttachmentLeaseRepository extends JpaRepository<AttachmentLease, Long>{
+	
+	List<AttachmentLease> findByNodeIdAndAttachmentIdGreaterThanOrderByAttachmentId(int nodeId, long attachmentId, Pageable pageable);
+	
+	List<AttachmentLease> findByExpiresAtLessThanOrderByExpiresAt(long expiresAt, Pageable pageable);
+	
+	@Transactional
+	@Modifying
+	@Query("delete from AttachmentLease l where l.attachmentId in :ids")
+	int deleteByAttachmentIdIn(@Param("ids") Collection<Long> ids);
+
+}
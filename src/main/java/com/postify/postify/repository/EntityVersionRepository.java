@@ -0,0 +1,17 @@
+package com.postify.postify.repository;
+
+import com.postify.postify.entity.EntityVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface EntityVersionRepository extends JpaRepository<EntityVersion, String>{
+	
+	@Transactional
+	@Modifying
+	@Query("update EntityVersion v set v.version = v.version + 1 where v.name = :name")
+	int increment(@Param("name") String name);
+
+}
@@ -1,13 +1,39 @@
 package com.postify.postify.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.util.TimeOrderedIdGenerator;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long>{
 	
 	List<FileAttachment> findByDateBeforeAndPostIsNull(Date date);
+	
+	@Query("select a.id, a.name from FileAttachment a where a.date < :date and a.post is null and a.id > :afterId "
+			+ "and mod(a.id / " + TimeOrderedIdGenerator.MILLIS_UNIT + ", :partitions) = :partition order by a.id")
+	List<Object[]> findOrphansAfter(@Param("date") Date date, @Param("afterId") long afterId,
+									@Param("partitions") long partitions, @Param("partition") long partition, Pageable pageable);
+	
+	@Transactional
+	@Modifying
+	@Query("delete from FileAttachment a where a.id in :ids and a.post is null")
+	int deleteOrphansByIdIn(@Param("ids") Collection<Long> ids);
+	
+	long countByName(String name);
+	
+	List<FileAttachment> findByNameAndPostIsNotNull(String name);
+	
+	@Transactional
+	@Modifying
+	@Query("update FileAttachment a set a.thumbnail = :thumbnail, a.medium = :medium where a.name = :name")
+	int updateVariants(@Param("name") String name, @Param("thumbnail") String thumbnail, @Param("medium") String medium);
 
 }
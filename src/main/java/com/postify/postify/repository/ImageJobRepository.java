@@ -0,0 +1,37 @@
+package com.postify.postify.repository;
+
+import java.util.List;
+
+import com.postify.postify.entity.ImageJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ImageJobRepository extends JpaRepository<ImageJob, Long>{
+	
+	List<ImageJob> findByLeasedUntilLessThanEqualAndIdGreaterThanOrderById(long now, long id, Pageable pageable);
+	
+	@Transactional
+	@Modifying
+	@Query("update ImageJob j set j.owner = :owner, j.leasedUntil = :leasedUntil where j.id = :id and j.leasedUntil <= :now")
+	int claim(@Param("id") long id, @Param("owner") String owner, @Param("now") long now, @Param("leasedUntil") long leasedUntil);
+	
+	@Transactional
+	@Modifying
+	@Query("update ImageJob j set j.owner = null, j.leasedUntil = 0 where j.id = :id and j.owner = :owner")
+	int release(@Param("id") long id, @Param("owner") String owner);
+	
+	@Transactional
+	@Modifying
+	@Query("update ImageJob j set j.attempts = j.attempts + 1, j.owner = null, j.leasedUntil = 0 where j.id = :id and j.owner = :owner")
+	int incrementAttempts(@Param("id") long id, @Param("owner") String owner);
+	
+	@Transactional
+	@Modifying
+	@Query("delete from ImageJob j where j.id = :id")
+	int deleteIfExists(@Param("id") long id);
+
+}
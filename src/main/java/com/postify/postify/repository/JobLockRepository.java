@@ -0,0 +1,35 @@
+package com.postify.postify.repository;
+
+import java.util.Date;
+
+import com.postify.postify.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface JobLockRepository extends JpaRepository<JobLock, String>{
+	
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update JobLock l set l.owner = :owner, l.fencingToken = l.fencingToken + 1, l.lockedUntil = :lockedUntil "
+			+ "where l.name = :name and l.lockedUntil <= :now")
+	int acquire(@Param("name") String name, @Param("owner") String owner, @Param("now") long now, @Param("lockedUntil") long lockedUntil);
+	
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("update JobLock l set l.lockedUntil = :lockedUntil where l.name = :name and l.owner = :owner and l.fencingToken = :token")
+	int release(@Param("name") String name, @Param("owner") String owner, @Param("token") long token, @Param("lockedUntil") long lockedUntil);
+	
+	@Query("select current_timestamp from JobLock l where l.name = :name")
+	Date findDatabaseTime(@Param("name") String name);
+	
+	@Query("select l.fencingToken from JobLock l where l.name = :name and l.owner = :owner")
+	Long findFencingToken(@Param("name") String name, @Param("owner") String owner);
+	
+	@Query("select case when count(l) > 0 then true else false end from JobLock l "
+			+ "where l.name = :name and l.owner = :owner and l.fencingToken = :token and l.lockedUntil > :now")
+	boolean isHeld(@Param("name") String name, @Param("owner") String owner, @Param("token") long token, @Param("now") long now);
+
+}
@@ -1,13 +1,78 @@
 package com.postify.postify.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import com.postify.postify.entity.EntityVersion;
 import com.postify.postify.entity.Post;
-import com.postify.postify.entity.User;
+import com.postify.postify.model.PostVM;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PostRepository extends JpaRepository<Post, Long>, JpaSpecificationExecutor<Post>{
 	
-	Page<Post> findByUser(User user, Pageable pageable);
+	String SELECT_POST_VM = "select new com.postify.postify.model.PostVM(p.id, p.content, p.timestamp, "
+			+ "u.id, u.username, u.displayName, u.image, u.imageThumbnail, u.imageMedium, "
+			+ "a.name, a.fileType, a.thumbnail, a.medium) "
+			+ "from Post p join p.user u left join p.attachment a";
+	
+	@Query(value = SELECT_POST_VM, countQuery = "select count(p) from Post p")
+	Page<PostVM> findAllPostVMs(Pageable pageable);
+	
+	@Query(value = SELECT_POST_VM + " where u.id = :userId",
+			countQuery = "select count(p) from Post p where p.user.id = :userId")
+	Page<PostVM> findPostVMsByUserId(@Param("userId") long userId, Pageable pageable);
+	
+	@Query(value = SELECT_POST_VM + " where p.id < :id",
+			countQuery = "select count(p) from Post p where p.id < :id")
+	Page<PostVM> findPostVMsBefore(@Param("id") long id, Pageable pageable);
+	
+	@Query(value = SELECT_POST_VM + " where p.id < :id and u.id = :userId",
+			countQuery = "select count(p) from Post p where p.id < :id and p.user.id = :userId")
+	Page<PostVM> findPostVMsBeforeByUserId(@Param("id") long id, @Param("userId") long userId, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id < :id")
+	Slice<PostVM> findPostVMSliceBefore(@Param("id") long id, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id < :id and lower(p.content) like :pattern")
+	Slice<PostVM> findPostVMSliceBeforeByContent(@Param("id") long id, @Param("pattern") String pattern, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id < :id and u.id = :userId")
+	Slice<PostVM> findPostVMSliceBeforeByUserId(@Param("id") long id, @Param("userId") long userId, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id > :id")
+	List<PostVM> findPostVMsAfter(@Param("id") long id, Sort sort);
+	
+	@Query(SELECT_POST_VM + " where p.id > :id and u.id = :userId")
+	List<PostVM> findPostVMsAfterByUserId(@Param("id") long id, @Param("userId") long userId, Sort sort);
+	
+	@Query(value = SELECT_POST_VM + " where p.id < :id and p.id in (select t.postId from PostTag t where t.tag = :tag)",
+			countQuery = "select count(p) from Post p where p.id < :id and p.id in (select t.postId from PostTag t where t.tag = :tag)")
+	Page<PostVM> findPostVMsBeforeByTag(@Param("id") long id, @Param("tag") String tag, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id < :id and p.id in (select t.postId from PostTag t where t.tag = :tag)")
+	Slice<PostVM> findPostVMSliceBeforeByTag(@Param("id") long id, @Param("tag") String tag, Pageable pageable);
+	
+	@Query(SELECT_POST_VM + " where p.id > :id and p.id in (select t.postId from PostTag t where t.tag = :tag)")
+	List<PostVM> findPostVMsAfterByTag(@Param("id") long id, @Param("tag") String tag, Sort sort);
+	
+	@Query(SELECT_POST_VM + " where p.id in :ids")
+	List<PostVM> findPostVMsByIds(@Param("ids") Collection<Long> ids);
+	
+	@Query("select max(p.id), (select v.version from EntityVersion v where v.name = '" + EntityVersion.POSTS + "') from Post p")
+	List<Object[]> findPostsState();
+	
+	@Query("select max(p.id), count(p.id), u.profileVersion from User u left join u.posts p where u.id = :userId group by u.profileVersion")
+	List<Object[]> findPostsStateByUserId(@Param("userId") long userId);
+	
+	@Query("select p.id, p.content from Post p where p.id > :afterId order by p.id")
+	List<Object[]> findContentAfter(@Param("afterId") long afterId, Pageable pageable);
+	
+	boolean existsByIdAndUserId(long id, long userId);
 }
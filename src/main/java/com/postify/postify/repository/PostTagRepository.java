@@ -0,0 +1,17 @@
+package com.postify.postify.repository;
+
+import com.postify.postify.entity.PostTag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface PostTagRepository extends JpaRepository<PostTag, Long>{
+	
+	@Transactional
+	@Modifying
+	@Query("delete from PostTag t where t.postId = :postId")
+	int deleteByPostId(@Param("postId") long postId);
+
+}
@@ -1,13 +1,44 @@
 package com.postify.postify.repository;
 
 import com.postify.postify.entity.User;
+import com.postify.postify.model.UserVM;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface UserRepository extends JpaRepository<User, Long>{
 	
+	String SELECT_USER_VM = "select new com.postify.postify.model.UserVM(u.id, u.username, u.displayName, u.image, "
+			+ "u.imageThumbnail, u.imageMedium) from User u";
+	
 	User findByUsername(String username);
 	
-	Page<User> findByUsernameNot(String username, Pageable page);
+	User findByImage(String image);
+	
+	@Transactional
+	@Modifying
+	@Query("update User u set u.imageThumbnail = :thumbnail, u.imageMedium = :medium where u.image = :image")
+	int updateImageVariants(@Param("image") String image, @Param("thumbnail") String thumbnail, @Param("medium") String medium);
+	
+	@Transactional
+	@Modifying
+	@Query("update User u set u.profileVersion = u.profileVersion + 1 where u.id = :id")
+	int touch(@Param("id") long id);
+	
+	@Query("select u.profileVersion from User u where u.id = :id")
+	Long findProfileVersionById(@Param("id") long id);
+	
+	@Query("select u.id from User u where u.username = :username")
+	Long findIdByUsername(@Param("username") String username);
+	
+	@Query(value = SELECT_USER_VM, countQuery = "select count(u) from User u")
+	Page<UserVM> findAllUserVMs(Pageable page);
+	
+	@Query(value = SELECT_USER_VM + " where u.username <> :username",
+			countQuery = "select count(u) from User u where u.username <> :username")
+	Page<UserVM> findUserVMsByUsernameNot(@Param("username") String username, Pageable page);
 }
@@ -0,0 +1,176 @@
+package com.postify.postify.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.AttachmentLease;
+import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.event.AttachmentSavedEvent;
+import com.postify.postify.repository.AttachmentLeaseRepository;
+import com.postify.postify.repository.FileAttachmentRepository;
+import com.postify.postify.util.TimingWheel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Service
+public class AttachmentLeaseService {
+
+	static final String LEASE_SWEEP = "attachment-lease-sweep";
+
+	private static final long TICK_MS = 1000;
+
+	private static final long SWEEP_MS = 60 * 1000;
+
+	private static final int WHEEL_SIZE = 60;
+
+	private static final int RECOVERY_PAGE_SIZE = 1000;
+
+	AttachmentLeaseRepository attachmentLeaseRepository;
+
+	FileAttachmentRepository fileAttachmentRepository;
+
+	FileService fileService;
+
+	JobLockService jobLockService;
+
+	int nodeId;
+
+	int batchSize;
+
+	TimingWheel<Long> wheel;
+
+	Map<Long, String> names = new ConcurrentHashMap<>();
+
+	public AttachmentLeaseService(AttachmentLeaseRepository attachmentLeaseRepository,
+								  FileAttachmentRepository fileAttachmentRepository, FileService fileService,
+								  JobLockService jobLockService, AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+		super();
+		this.attachmentLeaseRepository = attachmentLeaseRepository;
+		this.fileAttachmentRepository = fileAttachmentRepository;
+		this.fileService = fileService;
+		this.jobLockService = jobLockService;
+		this.nodeId = appConfiguration.getNodeId();
+		this.batchSize = appConfiguration.getAttachmentCleanupBatchSize();
+		this.wheel = new TimingWheel<>(TICK_MS, WHEEL_SIZE, System.currentTimeMillis());
+		Gauge.builder("postify.attachments.leases", wheel, TimingWheel::size).register(meterRegistry);
+	}
+
+	@EventListener
+	public void onAttachmentSaved(AttachmentSavedEvent event) {
+		FileAttachment attachment = event.getAttachment();
+		schedule(attachment.getId(), attachment.getName(), event.getLeaseExpiresAt());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void recover() {
+		long afterId = Long.MIN_VALUE;
+		List<AttachmentLease> page;
+		do {
+			page = attachmentLeaseRepository.findByNodeIdAndAttachmentIdGreaterThanOrderByAttachmentId(nodeId, afterId,
+					PageRequest.of(0, RECOVERY_PAGE_SIZE));
+			for(AttachmentLease lease : page) {
+				if(!wheel.contains(lease.getAttachmentId())) {
+					schedule(lease.getAttachmentId(), lease.getName(), lease.getExpiresAt());
+				}
+				afterId = lease.getAttachmentId();
+			}
+		} while(page.size() == RECOVERY_PAGE_SIZE);
+	}
+
+	public void claim(long attachmentId) {
+		claimAll(Collections.singletonList(attachmentId));
+	}
+
+	public void claimAll(Collection<Long> attachmentIds) {
+		if(attachmentIds.isEmpty()) {
+			return;
+		}
+		attachmentLeaseRepository.deleteByAttachmentIdIn(attachmentIds);
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			cancel(attachmentIds);
+			return;
+		}
+		// a rolled back claim keeps its lease row, so the timer must survive until the post is committed
+		List<Long> claimed = new ArrayList<>(attachmentIds);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				cancel(claimed);
+			}
+		});
+	}
+
+	@Scheduled(fixedDelay = TICK_MS)
+	public void expireDue() {
+		List<Long> expired = wheel.advance(System.currentTimeMillis());
+		for(int from = 0; from < expired.size(); from += batchSize) {
+			List<Long> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+			List<String> released = new ArrayList<>(batch.size());
+			for(Long attachmentId : batch) {
+				String name = names.remove(attachmentId);
+				if(name != null) {
+					released.add(name);
+				}
+			}
+			expire(batch, released);
+		}
+	}
+
+	@Scheduled(fixedDelay = SWEEP_MS, initialDelay = SWEEP_MS)
+	public void sweepAbandoned() {
+		jobLockService.runExclusively(LEASE_SWEEP, leaseHeld -> {
+			// leases still here a sweep interval after expiry belong to a node that is gone
+			long expiredBefore = System.currentTimeMillis() - SWEEP_MS;
+			List<AttachmentLease> page;
+			do {
+				page = attachmentLeaseRepository.findByExpiresAtLessThanOrderByExpiresAt(expiredBefore, PageRequest.of(0, batchSize));
+				if(!leaseHeld.getAsBoolean()) {
+					break;
+				}
+				List<Long> ids = new ArrayList<>(page.size());
+				List<String> released = new ArrayList<>(page.size());
+				for(AttachmentLease lease : page) {
+					ids.add(lease.getAttachmentId());
+					released.add(lease.getName());
+				}
+				expire(ids, released);
+			} while(page.size() == batchSize);
+		});
+	}
+
+	private void expire(List<Long> attachmentIds, List<String> released) {
+		if(attachmentIds.isEmpty()) {
+			return;
+		}
+		fileAttachmentRepository.deleteOrphansByIdIn(attachmentIds);
+		attachmentLeaseRepository.deleteByAttachmentIdIn(attachmentIds);
+		for(String name : released) {
+			fileService.releaseAttachmentImage(name);
+		}
+	}
+
+	private void cancel(Collection<Long> attachmentIds) {
+		for(long attachmentId : attachmentIds) {
+			wheel.cancel(attachmentId);
+			names.remove(attachmentId);
+		}
+	}
+
+	private void schedule(long attachmentId, String name, long expiresAt) {
+		names.put(attachmentId, name);
+		wheel.schedule(attachmentId, expiresAt);
+	}
+
+}
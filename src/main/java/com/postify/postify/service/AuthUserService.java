@@ -6,21 +6,21 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import com.postify.postify.entity.User;
-import com.postify.postify.repository.UserRepository;
+import com.postify.postify.model.AuthUser;
 
 @Service
 public class AuthUserService implements UserDetailsService {
 	
 	@Autowired
-	UserRepository userRepository;
+	UserIdCache userIdCache;
 
 	@Override
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-		User user = userRepository.findByUsername(username);
+		User user = userIdCache.findUser(username);
 		if(user == null) {
 			throw new UsernameNotFoundException("User not found");
 		}
-		return user;
+		return new AuthUser(user);
 	}
 
 }
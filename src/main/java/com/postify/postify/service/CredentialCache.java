@@ -0,0 +1,90 @@
+package com.postify.postify.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CredentialCache {
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	BoundedCache<String, UserDetails> cache;
+
+	SecretKeySpec keySpec;
+
+	ThreadLocal<Mac> macs;
+
+	AtomicLong generation = new AtomicLong();
+
+	public CredentialCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+		super();
+		this.cache = new BoundedCache<>(appConfiguration.getAuthCacheSize(), appConfiguration.getAuthCacheTtl());
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.keySpec = new SecretKeySpec(secret, HMAC_ALGORITHM);
+		this.macs = ThreadLocal.withInitial(this::createMac);
+
+		FunctionCounter.builder("postify.auth.cache", cache, BoundedCache::getHits)
+			.tag("result", "hit").register(meterRegistry);
+		FunctionCounter.builder("postify.auth.cache", cache, BoundedCache::getMisses)
+			.tag("result", "miss").register(meterRegistry);
+		Gauge.builder("postify.auth.cache.size", cache, BoundedCache::size).register(meterRegistry);
+	}
+
+	public String keyFor(String username, String password) {
+		Mac mac = macs.get();
+		mac.update(username.getBytes(StandardCharsets.UTF_8));
+		mac.update((byte) 0);
+		byte[] digest = mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+		return Base64.getEncoder().encodeToString(digest);
+	}
+
+	public UserDetails get(String key) {
+		return cache.get(key);
+	}
+
+	public long generation() {
+		return generation.get();
+	}
+
+	public synchronized void put(String key, UserDetails user, long expectedGeneration) {
+		if(generation.get() == expectedGeneration) {
+			cache.put(key, user);
+		}
+	}
+
+	public synchronized void invalidate(String username) {
+		generation.incrementAndGet();
+		cache.removeIf(user -> user.getUsername().equals(username));
+	}
+
+	public synchronized void clear() {
+		generation.incrementAndGet();
+		cache.clear();
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(keySpec);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.postify.postify.service;
+
+import java.util.List;
+
+import com.postify.postify.entity.EntityVersion;
+import com.postify.postify.repository.EntityVersionRepository;
+import com.postify.postify.repository.PostRepository;
+import com.postify.postify.repository.UserRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+@Service
+public class EntityTagService {
+
+	PostRepository postRepository;
+
+	UserRepository userRepository;
+
+	EntityVersionRepository entityVersionRepository;
+
+	public EntityTagService(PostRepository postRepository, UserRepository userRepository,
+							EntityVersionRepository entityVersionRepository) {
+		super();
+		this.postRepository = postRepository;
+		this.userRepository = userRepository;
+		this.entityVersionRepository = entityVersionRepository;
+	}
+
+	public String postsTag() {
+		Object[] state = first(postRepository.findPostsState());
+		return "\"p" + value(state, 0) + "-" + value(state, 1) + "\"";
+	}
+
+	// new posts move max(id) on their own, everything else that changes the listing bumps this version
+	public void postsChanged() {
+		if(entityVersionRepository.increment(EntityVersion.POSTS) > 0) {
+			return;
+		}
+		try {
+			entityVersionRepository.save(new EntityVersion(EntityVersion.POSTS, 1));
+		} catch (DataIntegrityViolationException e) {
+			// another node created the row first
+			entityVersionRepository.increment(EntityVersion.POSTS);
+		}
+	}
+
+	public String postsOfUserTag(long userId) {
+		Object[] state = first(postRepository.findPostsStateByUserId(userId));
+		return "\"p" + userId + "-" + value(state, 0) + "-" + value(state, 1) + "-" + value(state, 2) + "\"";
+	}
+
+	public String userTag(long userId) {
+		Long version = userRepository.findProfileVersionById(userId);
+		return "\"u" + userId + "-" + (version == null ? 0 : version) + "\"";
+	}
+
+	private Object[] first(List<Object[]> rows) {
+		return rows.isEmpty() ? new Object[0] : rows.get(0);
+	}
+
+	private long value(Object[] state, int index) {
+		if(index >= state.length || state[index] == null) {
+			return 0;
+		}
+		return ((Number) state[index]).longValue();
+	}
+
+}
@@ -1,50 +1,172 @@
 package com.postify.postify.service;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.PreDestroy;
 
 import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.AttachmentLease;
 import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.event.AttachmentSavedEvent;
+import com.postify.postify.exception.BadRequestException;
+import com.postify.postify.exception.PayloadTooLargeException;
+import com.postify.postify.repository.AttachmentLeaseRepository;
 import com.postify.postify.repository.FileAttachmentRepository;
-import org.apache.commons.io.FileUtils;
+import com.postify.postify.util.StorageLayout;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.io.input.CharSequenceInputStream;
 import org.apache.tika.Tika;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 @EnableScheduling
 public class FileService {
 	
+	private static final int SNIFF_SIZE = 8 * 1024;
+	
+	private static final int SNIFF_BASE64_LENGTH = SNIFF_SIZE / 3 * 4;
+	
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	static final String UPLOAD_PREFIX = "upload-";
+	
+	private static final int BLOB_LOCK_STRIPES = 64;
+	
+	private static final String RELEASED_SUFFIX = ".released";
+	
 	AppConfiguration appConfiguration;
 	
 	Tika tika;
 	
 	FileAttachmentRepository fileAttachmentRepository;
+	
+	AttachmentLeaseRepository attachmentLeaseRepository;
+	
+	TransactionTemplate transactionTemplate;
+	
+	ImageCache imageCache;
+	
+	ApplicationEventPublisher eventPublisher;
+	
+	Object[] blobLocks = new Object[BLOB_LOCK_STRIPES];
+	
+	AtomicLong storedUploads = new AtomicLong();
+	
+	AtomicLong deduplicatedUploads = new AtomicLong();
+	
+	AtomicLong bytesSaved = new AtomicLong();
+	
+	AtomicLong cleanedRows = new AtomicLong();
+	
+	AtomicLong cleanedFiles = new AtomicLong();
+	
+	AtomicLong lastCleanupRows = new AtomicLong();
+	
+	ExecutorService cleanupExecutor;
 
-	public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository) {
+	public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository,
+					   AttachmentLeaseRepository attachmentLeaseRepository, PlatformTransactionManager transactionManager,
+					   ImageCache imageCache, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
 		super();
 		this.appConfiguration = appConfiguration;
 		this.fileAttachmentRepository = fileAttachmentRepository;
+		this.attachmentLeaseRepository = attachmentLeaseRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.imageCache = imageCache;
+		this.eventPublisher = eventPublisher;
 		tika = new Tika();
+		for(int i = 0; i < blobLocks.length; i++) {
+			blobLocks[i] = new Object();
+		}
+		this.cleanupExecutor = Executors.newFixedThreadPool(appConfiguration.getAttachmentCleanupThreads());
+		
+		FunctionCounter.builder("postify.attachments.uploads", storedUploads, AtomicLong::get)
+			.tag("result", "stored").register(meterRegistry);
+		FunctionCounter.builder("postify.attachments.uploads", deduplicatedUploads, AtomicLong::get)
+			.tag("result", "deduplicated").register(meterRegistry);
+		FunctionCounter.builder("postify.attachments.dedup.bytes.saved", bytesSaved, AtomicLong::get)
+			.baseUnit("bytes").register(meterRegistry);
+		Gauge.builder("postify.attachments.dedup.ratio", this, FileService::getDeduplicationRatio).register(meterRegistry);
+		FunctionCounter.builder("postify.attachments.cleanup", cleanedRows, AtomicLong::get)
+			.tag("type", "rows").register(meterRegistry);
+		FunctionCounter.builder("postify.attachments.cleanup", cleanedFiles, AtomicLong::get)
+			.tag("type", "files").register(meterRegistry);
+		Gauge.builder("postify.attachments.cleanup.last.run", lastCleanupRows, AtomicLong::get).register(meterRegistry);
 	}
 	
 	public String saveProfileImage(String base64Image) throws IOException {
 		String imageName = getRandomName();
 		
-		byte[] decodedBytes = Base64.getDecoder().decode(base64Image);
-		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + imageName);
-		FileUtils.writeByteArrayToFile(target, decodedBytes);
+		Path target = createShardedPath(appConfiguration.getFullProfileImagesPath(), imageName);
+		try (InputStream in = Base64.getDecoder().wrap(new CharSequenceInputStream(base64Image, StandardCharsets.US_ASCII))) {
+			writeStream(in, target, appConfiguration.getMaxProfileImageSize().toBytes());
+		}
+		return imageName;
+	}
+
+	public String saveProfileImage(MultipartFile image) throws IOException {
+		long maxSize = appConfiguration.getMaxProfileImageSize().toBytes();
+		if(image.getSize() > maxSize) {
+			throw new PayloadTooLargeException("Profile image exceeds " + maxSize + " bytes");
+		}
+		String imageName = getRandomName();
+		
+		Path target = createShardedPath(appConfiguration.getFullProfileImagesPath(), imageName);
+		String fileType;
+		try (InputStream in = image.getInputStream()) {
+			fileType = writeStream(in, target, maxSize);
+		}
+		if(!isSupportedProfileImage(fileType)) {
+			Files.deleteIfExists(target);
+			throw new BadRequestException("Only PNG and JPG files are allowed");
+		}
 		return imageName;
 	}
 
+	public boolean isSupportedProfileImage(String fileType) {
+		return fileType.equalsIgnoreCase("image/png") || fileType.equalsIgnoreCase("image/jpeg");
+	}
+
 	private String getRandomName() {
 		return UUID.randomUUID().toString().replaceAll("-", "");
 	}
@@ -53,50 +175,292 @@ public class FileService {
 		return tika.detect(fileArr);
 	}
 
+	public String detectBase64Type(String base64) {
+		int length = Math.min(base64.length(), SNIFF_BASE64_LENGTH) & ~3;
+		return tika.detect(Base64.getDecoder().decode(base64.substring(0, length)));
+	}
+
 	public void deleteProfileImage(String image) {
-		try {
-			Files.deleteIfExists(Paths.get(appConfiguration.getFullProfileImagesPath()+"/"+image));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		
+		deleteWithVariants(appConfiguration.getFullProfileImagesPath(), image);
 	}
 
 	public FileAttachment saveAttachment(MultipartFile file) {
+		long maxSize = appConfiguration.getMaxAttachmentSize().toBytes();
+		if(file.getSize() > maxSize) {
+			throw new PayloadTooLargeException("Attachment exceeds " + maxSize + " bytes");
+		}
 		FileAttachment fileAttachment = new FileAttachment();
 		fileAttachment.setDate(new Date());
-		String randomName = getRandomName();
-		fileAttachment.setName(randomName);
 		
-		File target = new File(appConfiguration.getFullAttachmentsPath() +"/"+randomName);
-		try {
-			byte[] fileAsByte = file.getBytes();
-			FileUtils.writeByteArrayToFile(target, fileAsByte);
-			fileAttachment.setFileType(detectType(fileAsByte));
+		Path upload = Paths.get(appConfiguration.getFullAttachmentsPath(), UPLOAD_PREFIX + getRandomName());
+		MessageDigest digest = newDigest();
+		try (InputStream in = file.getInputStream()) {
+			fileAttachment.setFileType(writeStream(in, upload, maxSize, digest));
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new UncheckedIOException("Attachment could not be stored", e);
 		}
+		String blobName = toHex(digest.digest());
+		fileAttachment.setName(blobName);
 		
-		return fileAttachmentRepository.save(fileAttachment);
+		long leaseExpiresAt = fileAttachment.getDate().getTime() + appConfiguration.getAttachmentLease().toMillis();
+		FileAttachment saved;
+		synchronized (blobLock(blobName)) {
+			// the row goes in first, so a release on another node re-counts it before deleting the blob
+			saved = transactionTemplate.execute(status -> {
+				FileAttachment row = fileAttachmentRepository.save(fileAttachment);
+				attachmentLeaseRepository.save(new AttachmentLease(row.getId(), blobName, leaseExpiresAt, appConfiguration.getNodeId()));
+				return row;
+			});
+			try {
+				storeBlob(upload, blobName);
+			} catch (IOException e) {
+				transactionTemplate.executeWithoutResult(status -> {
+					attachmentLeaseRepository.deleteById(saved.getId());
+					fileAttachmentRepository.delete(saved);
+				});
+				throw new UncheckedIOException("Attachment could not be stored", e);
+			} finally {
+				deleteQuietly(upload);
+			}
+		}
+		return register(saved, leaseExpiresAt);
+	}
+
+	private void storeBlob(Path upload, String blobName) throws IOException {
+		long size = Files.size(upload);
+		if(resolve(appConfiguration.getFullAttachmentsPath(), blobName) != null) {
+			Files.delete(upload);
+			deduplicatedUploads.incrementAndGet();
+			bytesSaved.addAndGet(size);
+		} else {
+			Path target = createShardedPath(appConfiguration.getFullAttachmentsPath(), blobName);
+			Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+			storedUploads.incrementAndGet();
+		}
+	}
+
+	private FileAttachment register(FileAttachment saved, long leaseExpiresAt) {
+		eventPublisher.publishEvent(new AttachmentSavedEvent(saved, leaseExpiresAt));
+		return saved;
+	}
+
+	private String writeStream(InputStream in, Path target, long maxSize) throws IOException {
+		return writeStream(in, target, maxSize, null);
+	}
+
+	private String writeStream(InputStream in, Path target, long maxSize, MessageDigest digest) throws IOException {
+		byte[] prefix = new byte[SNIFF_SIZE];
+		int prefixLength = 0;
+		long written = 0;
+		boolean completed = false;
+		ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+		try (ReadableByteChannel source = Channels.newChannel(in);
+			 FileChannel sink = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while(source.read(buffer) != -1) {
+				buffer.flip();
+				written += buffer.remaining();
+				if(written > maxSize) {
+					throw new PayloadTooLargeException("File exceeds " + maxSize + " bytes");
+				}
+				if(prefixLength < prefix.length) {
+					int length = Math.min(buffer.remaining(), prefix.length - prefixLength);
+					buffer.duplicate().get(prefix, prefixLength, length);
+					prefixLength += length;
+				}
+				if(digest != null) {
+					digest.update(buffer.duplicate());
+				}
+				while(buffer.hasRemaining()) {
+					sink.write(buffer);
+				}
+				buffer.clear();
+			}
+			completed = true;
+		} finally {
+			if(!completed) {
+				Files.deleteIfExists(target);
+			}
+		}
+		return tika.detect(Arrays.copyOf(prefix, prefixLength));
 	}
 
-	@Scheduled(fixedRate = 60 * 60 * 1000)
 	public void cleanupStorage() {
-		Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-		List<FileAttachment> oldFiles = fileAttachmentRepository.findByDateBeforeAndPostIsNull(oneHourAgo);
-		for(FileAttachment file: oldFiles) {
-			deleteAttachmentImage(file.getName());
-			fileAttachmentRepository.deleteById(file.getId());
+		cleanupStorage(1, 0, () -> true);
+	}
+
+	public void cleanupStorage(int partitions, int partition, BooleanSupplier leaseHeld) {
+		Date leaseExpired = new Date(System.currentTimeMillis() - appConfiguration.getAttachmentLease().toMillis());
+		int remaining = appConfiguration.getAttachmentCleanupMaxPerRun();
+		long afterId = Long.MIN_VALUE;
+		long deletedRows = 0;
+		int limit;
+		List<Object[]> page;
+		do {
+			limit = Math.min(appConfiguration.getAttachmentCleanupBatchSize(), remaining);
+			page = fileAttachmentRepository.findOrphansAfter(leaseExpired, afterId, partitions, partition, PageRequest.of(0, limit));
+			if(page.isEmpty()) {
+				break;
+			}
+			List<Long> ids = new ArrayList<>(page.size());
+			Set<String> names = new HashSet<>();
+			for(Object[] row: page) {
+				ids.add((Long) row[0]);
+				names.add((String) row[1]);
+			}
+			if(!leaseHeld.getAsBoolean()) {
+				break;
+			}
+			int deleted = fileAttachmentRepository.deleteOrphansByIdIn(ids);
+			deletedRows += deleted;
+			cleanedRows.addAndGet(deleted);
+			releaseAttachmentImages(names);
+			
+			remaining -= page.size();
+			afterId = ids.get(ids.size() - 1);
+		} while(page.size() == limit && remaining > 0);
+		lastCleanupRows.set(deletedRows);
+	}
+
+	public boolean releaseAttachmentImage(String image) {
+		synchronized (blobLock(image)) {
+			if(fileAttachmentRepository.countByName(image) > 0) {
+				return false;
+			}
+			Path stored = resolve(appConfiguration.getFullAttachmentsPath(), image);
+			if(stored != null) {
+				Path released = stored.resolveSibling(stored.getFileName() + RELEASED_SUFFIX);
+				try {
+					Files.move(stored, released, StandardCopyOption.ATOMIC_MOVE);
+					if(fileAttachmentRepository.countByName(image) > 0) {
+						Files.move(released, stored, StandardCopyOption.ATOMIC_MOVE);
+						return false;
+					}
+					Files.delete(released);
+				} catch (IOException e) {
+					e.printStackTrace();
+					return false;
+				}
+			}
+			deleteAttachmentImage(image);
+			return true;
 		}
-		
+	}
+
+	private void releaseAttachmentImages(Collection<String> names) {
+		List<Callable<Boolean>> releases = new ArrayList<>(names.size());
+		for(String name: names) {
+			releases.add(() -> releaseAttachmentImage(name));
+		}
+		List<Future<Boolean>> results;
+		try {
+			results = cleanupExecutor.invokeAll(releases);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		for(Future<Boolean> result: results) {
+			try {
+				if(result.get()) {
+					cleanedFiles.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		cleanupExecutor.shutdownNow();
 	}
 
 	public void deleteAttachmentImage(String image) {
+		deleteWithVariants(appConfiguration.getFullAttachmentsPath(), image);
+	}
+
+	public void deleteVariants(String folder, String name) {
+		for(String variant: StorageLayout.VARIANTS) {
+			deleteStoredFile(folder, StorageLayout.variantName(name, variant));
+		}
+	}
+
+	private void deleteWithVariants(String folder, String name) {
+		if(name == null) {
+			return;
+		}
+		deleteStoredFile(folder, name);
+		deleteVariants(folder, name);
+	}
+
+	public Path resolve(String folder, String name) {
+		Path sharded = StorageLayout.shardedPath(folder, name);
+		if(Files.exists(sharded)) {
+			return sharded;
+		}
+		Path flat = StorageLayout.flatPath(folder, name);
+		if(Files.exists(flat)) {
+			return flat;
+		}
+		return Files.exists(sharded) ? sharded : null;
+	}
+
+	public Path createShardedPath(String folder, String name) throws IOException {
+		Path target = StorageLayout.shardedPath(folder, name);
+		Files.createDirectories(target.getParent());
+		return target;
+	}
+
+	private void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void deleteStoredFile(String folder, String name) {
+		if(name == null) {
+			return;
+		}
+		Path flat = StorageLayout.flatPath(folder, name);
+		Path sharded = StorageLayout.shardedPath(folder, name);
 		try {
-			Files.deleteIfExists(Paths.get(appConfiguration.getFullAttachmentsPath()+"/"+image));
+			Files.deleteIfExists(flat);
+			Files.deleteIfExists(sharded);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		imageCache.invalidate(flat);
+		imageCache.invalidate(sharded);
+	}
+
+	public double getDeduplicationRatio() {
+		long deduplicated = deduplicatedUploads.get();
+		long total = storedUploads.get() + deduplicated;
+		return total == 0 ? 0 : (double) deduplicated / total;
+	}
+
+	private Object blobLock(String name) {
+		return blobLocks[(name.hashCode() & Integer.MAX_VALUE) % blobLocks.length];
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for(byte b: bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
 	}
 
 }
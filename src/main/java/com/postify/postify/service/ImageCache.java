@@ -0,0 +1,188 @@
+package com.postify.postify.service;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.FrequencySketch;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ImageCache {
+
+	private static final int WINDOW_PERCENT = 1;
+
+	private static final int AVERAGE_IMAGE_SIZE = 16 * 1024;
+
+	long windowBudget;
+
+	long mainBudget;
+
+	long maxEntrySize;
+
+	long windowBytes;
+
+	long mainBytes;
+
+	LinkedHashMap<Path, CachedImage> window = new LinkedHashMap<>(16, 0.75f, true);
+
+	LinkedHashMap<Path, CachedImage> main = new LinkedHashMap<>(16, 0.75f, true);
+
+	FrequencySketch sketch;
+
+	AtomicLong hits = new AtomicLong();
+
+	AtomicLong misses = new AtomicLong();
+
+	public ImageCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+		super();
+		long budget = appConfiguration.getImageCacheSize().toBytes();
+		this.maxEntrySize = Math.min(appConfiguration.getImageCacheMaxEntrySize().toBytes(), budget);
+		this.windowBudget = Math.min(budget, Math.max(budget * WINDOW_PERCENT / 100, maxEntrySize));
+		this.mainBudget = budget - windowBudget;
+		this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(1, budget / AVERAGE_IMAGE_SIZE)));
+
+		FunctionCounter.builder("postify.image.cache", hits, AtomicLong::get)
+			.tag("result", "hit").register(meterRegistry);
+		FunctionCounter.builder("postify.image.cache", misses, AtomicLong::get)
+			.tag("result", "miss").register(meterRegistry);
+		Gauge.builder("postify.image.cache.hit.ratio", this, ImageCache::getHitRatio).register(meterRegistry);
+		Gauge.builder("postify.image.cache.resident", this, ImageCache::getResidentBytes)
+			.baseUnit("bytes").register(meterRegistry);
+	}
+
+	public boolean accepts(long size) {
+		return size > 0 && size <= maxEntrySize;
+	}
+
+	public ByteBuffer get(Path path, long size, long lastModified) {
+		CachedImage image;
+		synchronized (this) {
+			sketch.increment(path);
+			image = window.get(path);
+			if(image == null) {
+				image = main.get(path);
+			}
+			if(image != null && (image.size != size || image.lastModified != lastModified)) {
+				remove(path);
+				image = null;
+			}
+		}
+		if(image == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return image.content.duplicate();
+	}
+
+	public ByteBuffer put(Path path, ByteBuffer content, long lastModified) {
+		if(!accepts(content.remaining())) {
+			return content;
+		}
+		CachedImage image = new CachedImage(path, content.asReadOnlyBuffer(), lastModified);
+		synchronized (this) {
+			remove(path);
+			window.put(path, image);
+			windowBytes += image.size;
+			while(windowBytes > windowBudget) {
+				Iterator<CachedImage> eldest = window.values().iterator();
+				CachedImage candidate = eldest.next();
+				eldest.remove();
+				windowBytes -= candidate.size;
+				admit(candidate);
+			}
+		}
+		return image.content.duplicate();
+	}
+
+	public synchronized void invalidate(Path path) {
+		remove(path);
+	}
+
+	public synchronized void clear() {
+		window.clear();
+		main.clear();
+		windowBytes = 0;
+		mainBytes = 0;
+	}
+
+	public synchronized long getResidentBytes() {
+		return windowBytes + mainBytes;
+	}
+
+	public double getHitRatio() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	private void admit(CachedImage candidate) {
+		if(candidate.size > mainBudget) {
+			return;
+		}
+		int candidateFrequency = sketch.frequency(candidate.path);
+		Iterator<Map.Entry<Path, CachedImage>> victims = main.entrySet().iterator();
+		long reclaimable = mainBudget - mainBytes;
+		while(reclaimable < candidate.size) {
+			CachedImage victim = victims.next().getValue();
+			if(sketch.frequency(victim.path) >= candidateFrequency) {
+				return;
+			}
+			reclaimable += victim.size;
+		}
+		Iterator<Map.Entry<Path, CachedImage>> evictions = main.entrySet().iterator();
+		while(mainBudget - mainBytes < candidate.size) {
+			mainBytes -= evictions.next().getValue().size;
+			evictions.remove();
+		}
+		main.put(candidate.path, candidate.toDirect());
+		mainBytes += candidate.size;
+	}
+
+	private void remove(Path path) {
+		CachedImage removed = window.remove(path);
+		if(removed != null) {
+			windowBytes -= removed.size;
+		}
+		removed = main.remove(path);
+		if(removed != null) {
+			mainBytes -= removed.size;
+		}
+	}
+
+	private static class CachedImage {
+
+		final Path path;
+
+		final ByteBuffer content;
+
+		final long size;
+
+		final long lastModified;
+
+		CachedImage(Path path, ByteBuffer content, long lastModified) {
+			this.path = path;
+			this.content = content;
+			this.size = content.remaining();
+			this.lastModified = lastModified;
+		}
+
+		CachedImage toDirect() {
+			if(content.isDirect()) {
+				return this;
+			}
+			ByteBuffer direct = ByteBuffer.allocateDirect((int) size);
+			direct.put(content.duplicate()).flip();
+			return new CachedImage(path, direct.asReadOnlyBuffer(), lastModified);
+		}
+	}
+
+}
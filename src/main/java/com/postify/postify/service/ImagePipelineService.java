@@ -0,0 +1,320 @@
+package com.postify.postify.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.entity.ImageJob;
+import com.postify.postify.event.AttachmentSavedEvent;
+import com.postify.postify.event.ImageVariantsEvent;
+import com.postify.postify.event.ProfileImageSavedEvent;
+import com.postify.postify.repository.FileAttachmentRepository;
+import com.postify.postify.repository.ImageJobRepository;
+import com.postify.postify.repository.UserRepository;
+import com.postify.postify.util.StorageLayout;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class ImagePipelineService {
+
+	private static final int RECOVERY_PAGE_SIZE = 500;
+
+	private static final int MAX_ATTEMPTS = 5;
+
+	private static final long RETRY_DELAY_MS = 60 * 1000;
+
+	private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+	static final String CLOCK = "image-jobs";
+
+	AppConfiguration appConfiguration;
+
+	ImageJobRepository imageJobRepository;
+
+	UserRepository userRepository;
+
+	FileAttachmentRepository fileAttachmentRepository;
+
+	FileService fileService;
+
+	JobLockService jobLockService;
+
+	ApplicationEventPublisher eventPublisher;
+
+	ThreadPoolExecutor workers;
+
+	String owner;
+
+	long jobLeaseMillis;
+
+	Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+	AtomicLong completedJobs = new AtomicLong();
+
+	AtomicLong failedJobs = new AtomicLong();
+
+	public ImagePipelineService(AppConfiguration appConfiguration, ImageJobRepository imageJobRepository,
+								UserRepository userRepository, FileAttachmentRepository fileAttachmentRepository,
+								FileService fileService, JobLockService jobLockService, ApplicationEventPublisher eventPublisher,
+								MeterRegistry meterRegistry) {
+		super();
+		this.appConfiguration = appConfiguration;
+		this.imageJobRepository = imageJobRepository;
+		this.userRepository = userRepository;
+		this.fileAttachmentRepository = fileAttachmentRepository;
+		this.fileService = fileService;
+		this.jobLockService = jobLockService;
+		this.eventPublisher = eventPublisher;
+		this.owner = "node-" + appConfiguration.getNodeId() + "-" + UUID.randomUUID().toString().substring(0, 8);
+		this.jobLeaseMillis = appConfiguration.getImageJobLease().toMillis();
+		int threads = appConfiguration.getImageWorkerThreads();
+		this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(appConfiguration.getImageQueueCapacity()));
+		ImageIO.setUseCache(false);
+
+		Gauge.builder("postify.images.jobs.queued", workers, executor -> executor.getQueue().size()).register(meterRegistry);
+		FunctionCounter.builder("postify.images.jobs", completedJobs, AtomicLong::get)
+			.tag("result", "completed").register(meterRegistry);
+		FunctionCounter.builder("postify.images.jobs", failedJobs, AtomicLong::get)
+			.tag("result", "failed").register(meterRegistry);
+	}
+
+	@EventListener
+	public void onProfileImageSaved(ProfileImageSavedEvent event) {
+		enqueue(ImageJob.PROFILE, event.getName());
+	}
+
+	@EventListener
+	public void onAttachmentSaved(AttachmentSavedEvent event) {
+		FileAttachment attachment = event.getAttachment();
+		if(attachment.getFileType() != null && attachment.getFileType().startsWith("image/")) {
+			enqueue(ImageJob.ATTACHMENT, attachment.getName());
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void recover() {
+		resubmitPending();
+	}
+
+	@Scheduled(fixedDelay = RETRY_DELAY_MS, initialDelay = RETRY_DELAY_MS)
+	public void resubmitPending() {
+		if(!appConfiguration.isImageProcessingEnabled()) {
+			return;
+		}
+		// leases are compared across nodes, so they use the database clock like job locks do
+		long now = jobLockService.currentTime(CLOCK);
+		long afterId = Long.MIN_VALUE;
+		List<ImageJob> page;
+		do {
+			page = imageJobRepository.findByLeasedUntilLessThanEqualAndIdGreaterThanOrderById(now, afterId,
+					PageRequest.of(0, RECOVERY_PAGE_SIZE));
+			for(ImageJob job : page) {
+				afterId = job.getId();
+				if(pending.contains(job.getId())
+						|| imageJobRepository.claim(job.getId(), owner, now, now + jobLeaseMillis) == 0) {
+					continue;
+				}
+				if(!submit(job)) {
+					return;
+				}
+			}
+		} while(page.size() == RECOVERY_PAGE_SIZE);
+	}
+
+	boolean process(ImageJob job) throws IOException {
+		String folder = folderOf(job);
+		Path source = fileService.resolve(folder, job.getName());
+		if(source == null) {
+			return true;
+		}
+		String thumbnail = StorageLayout.variantName(job.getName(), StorageLayout.THUMBNAIL);
+		String medium = StorageLayout.variantName(job.getName(), StorageLayout.MEDIUM);
+		if(fileService.resolve(folder, thumbnail) == null || fileService.resolve(folder, medium) == null) {
+			BufferedImage original = readSource(source);
+			if(original == null) {
+				return true;
+			}
+			String format = original.getColorModel().hasAlpha() ? "png" : "jpg";
+			writeVariant(folder, thumbnail, original, appConfiguration.getImageThumbnailSize(), format);
+			writeVariant(folder, medium, original, appConfiguration.getImageMediumSize(), format);
+		}
+		if(fileService.resolve(folder, job.getName()) == null) {
+			fileService.deleteVariants(folder, job.getName());
+			return true;
+		}
+		if(!record(job, thumbnail, medium)) {
+			// the profile image was replaced while its variants were being written
+			fileService.deleteVariants(folder, job.getName());
+			return true;
+		}
+		eventPublisher.publishEvent(new ImageVariantsEvent(job.getKind(), job.getName()));
+		return true;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	private void enqueue(String kind, String name) {
+		if(!appConfiguration.isImageProcessingEnabled()) {
+			return;
+		}
+		ImageJob job = new ImageJob(kind, name);
+		job.setOwner(owner);
+		job.setLeasedUntil(jobLockService.currentTime(CLOCK) + jobLeaseMillis);
+		submit(imageJobRepository.save(job));
+	}
+
+	private boolean submit(ImageJob job) {
+		if(!pending.add(job.getId())) {
+			return true;
+		}
+		try {
+			workers.execute(() -> run(job));
+			return true;
+		} catch (RejectedExecutionException e) {
+			pending.remove(job.getId());
+			imageJobRepository.release(job.getId(), owner);
+			return false;
+		}
+	}
+
+	private void run(ImageJob job) {
+		try {
+			if(process(job)) {
+				imageJobRepository.deleteIfExists(job.getId());
+				completedJobs.incrementAndGet();
+			} else {
+				retry(job);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Image job {} for {} failed", job.getId(), job.getName(), e);
+			retry(job);
+		} finally {
+			pending.remove(job.getId());
+		}
+	}
+
+	private void retry(ImageJob job) {
+		failedJobs.incrementAndGet();
+		if(job.getAttempts() + 1 < MAX_ATTEMPTS) {
+			imageJobRepository.incrementAttempts(job.getId(), owner);
+			return;
+		}
+		log.warn("Giving up on image job {} for {} after {} attempts", job.getId(), job.getName(), MAX_ATTEMPTS);
+		fileService.deleteVariants(folderOf(job), job.getName());
+		imageJobRepository.deleteIfExists(job.getId());
+	}
+
+	private boolean record(ImageJob job, String thumbnail, String medium) {
+		if(ImageJob.PROFILE.equals(job.getKind())) {
+			return userRepository.updateImageVariants(job.getName(), thumbnail, medium) > 0;
+		}
+		fileAttachmentRepository.updateVariants(job.getName(), thumbnail, medium);
+		return true;
+	}
+
+	private String folderOf(ImageJob job) {
+		return ImageJob.PROFILE.equals(job.getKind())
+				? appConfiguration.getFullProfileImagesPath() : appConfiguration.getFullAttachmentsPath();
+	}
+
+	private BufferedImage readSource(Path source) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+			if(in == null) {
+				return null;
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if(!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if((long) width * height > MAX_SOURCE_PIXELS) {
+					log.warn("Skipping variants for oversized image {}", source);
+					return null;
+				}
+				// skip source pixels while decoding, but never below the largest variant we write
+				int subsampling = Math.max(1, Math.max(width, height) / appConfiguration.getImageMediumSize());
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private void writeVariant(String folder, String variantName, BufferedImage original,
+							  int maxSize, String format) throws IOException {
+		if(fileService.resolve(folder, variantName) != null) {
+			return;
+		}
+		BufferedImage resized = resize(original, maxSize);
+		Path upload = Paths.get(folder, FileService.UPLOAD_PREFIX + UUID.randomUUID().toString().replaceAll("-", ""));
+		try {
+			if(!ImageIO.write(resized, format, upload.toFile())) {
+				throw new IOException("No image writer for " + format);
+			}
+			Files.move(upload, fileService.createShardedPath(folder, variantName), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(upload);
+		}
+	}
+
+	private BufferedImage resize(BufferedImage original, int maxSize) {
+		double scale = Math.min(1.0, (double) maxSize / Math.max(original.getWidth(), original.getHeight()));
+		int width = Math.max(1, (int) Math.round(original.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(original.getHeight() * scale));
+		int type = original.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		BufferedImage resized = new BufferedImage(width, height, type);
+		Graphics2D graphics = resized.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(original, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return resized;
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.postify.postify.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.StoredImage;
+import com.postify.postify.util.BoundedCache;
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ImageService {
+
+	private static final int METADATA_CACHE_SIZE = 10000;
+
+	private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+	private static final Pattern IMAGE_NAME = Pattern.compile("[A-Za-z0-9_\\-][A-Za-z0-9_.\\-]*");
+
+	private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}");
+
+	AppConfiguration appConfiguration;
+
+	FileService fileService;
+
+	ImageCache imageCache;
+
+	Tika tika;
+
+	BoundedCache<Path, StoredImage> images;
+
+	public ImageService(AppConfiguration appConfiguration, FileService fileService, ImageCache imageCache) {
+		super();
+		this.appConfiguration = appConfiguration;
+		this.fileService = fileService;
+		this.imageCache = imageCache;
+		this.tika = new Tika();
+		this.images = new BoundedCache<>(METADATA_CACHE_SIZE);
+	}
+
+	public StoredImage find(String folder, String name) throws IOException {
+		String folderPath = folderPath(folder);
+		if(folderPath == null || !IMAGE_NAME.matcher(name).matches()) {
+			return null;
+		}
+		Path path = fileService.resolve(folderPath, name);
+		if(path == null) {
+			return null;
+		}
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		StoredImage cached = images.get(path);
+		if(cached != null && cached.getSize() == attributes.size() && cached.getLastModified() == lastModified) {
+			return cached;
+		}
+		StoredImage image = new StoredImage(path, attributes.size(), lastModified, eTag(name, path), tika.detect(path));
+		images.put(path, image);
+		return image;
+	}
+
+	public ByteBuffer load(StoredImage image) throws IOException {
+		if(!imageCache.accepts(image.getSize())) {
+			return null;
+		}
+		ByteBuffer cached = imageCache.get(image.getPath(), image.getSize(), image.getLastModified());
+		if(cached != null) {
+			return cached;
+		}
+		ByteBuffer content = ByteBuffer.allocate((int) image.getSize());
+		try (FileChannel channel = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+			while(content.hasRemaining()) {
+				if(channel.read(content) == -1) {
+					return null;
+				}
+			}
+		}
+		content.flip();
+		return imageCache.put(image.getPath(), content, image.getLastModified());
+	}
+
+	private String folderPath(String folder) {
+		if(folder.equals(appConfiguration.getProfileImagesFolder())) {
+			return appConfiguration.getFullProfileImagesPath();
+		}
+		if(folder.equals(appConfiguration.getAttachmentsFolder())) {
+			return appConfiguration.getFullAttachmentsPath();
+		}
+		return null;
+	}
+
+	private String eTag(String name, Path path) throws IOException {
+		if(CONTENT_ADDRESSED_NAME.matcher(name).matches()) {
+			return "\"" + name + "\"";
+		}
+		MessageDigest digest = FileService.newDigest();
+		ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while(channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return "\"" + FileService.toHex(digest.digest()) + "\"";
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.postify.postify.service;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.JobLock;
+import com.postify.postify.repository.JobLockRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+@Service
+public class JobLockService {
+
+	JobLockRepository jobLockRepository;
+
+	String owner;
+
+	Duration lockAtMost;
+
+	Duration lockAtLeast;
+
+	public JobLockService(JobLockRepository jobLockRepository, AppConfiguration appConfiguration) {
+		super();
+		this.jobLockRepository = jobLockRepository;
+		this.owner = "node-" + appConfiguration.getNodeId() + "-" + UUID.randomUUID().toString().substring(0, 8);
+		this.lockAtMost = appConfiguration.getJobLockAtMost();
+		this.lockAtLeast = appConfiguration.getJobLockAtLeast();
+	}
+
+	public OptionalLong tryAcquire(String name) {
+		createIfMissing(name);
+		return tryAcquire(name, databaseTime(name));
+	}
+
+	public boolean isHeld(String name, long token) {
+		return jobLockRepository.isHeld(name, owner, token, databaseTime(name));
+	}
+
+	public void release(String name, long token, long acquiredAt) {
+		long lockedUntil = Math.max(databaseTime(name), acquiredAt + lockAtLeast.toMillis());
+		jobLockRepository.release(name, owner, token, lockedUntil);
+	}
+
+	public long currentTime(String name) {
+		createIfMissing(name);
+		return databaseTime(name);
+	}
+
+	public boolean runExclusively(String name, Consumer<BooleanSupplier> job) {
+		createIfMissing(name);
+		long acquiredAt = databaseTime(name);
+		OptionalLong token = tryAcquire(name, acquiredAt);
+		if(!token.isPresent()) {
+			return false;
+		}
+		try {
+			job.accept(() -> isHeld(name, token.getAsLong()));
+		} finally {
+			release(name, token.getAsLong(), acquiredAt);
+		}
+		return true;
+	}
+
+	public int runPartitioned(String name, int partitions, PartitionJob job) {
+		int start = ThreadLocalRandom.current().nextInt(partitions);
+		int ran = 0;
+		for(int i = 0; i < partitions; i++) {
+			int partition = (start + i) % partitions;
+			if(runExclusively(name + "#" + partition, leaseHeld -> job.run(partition, leaseHeld))) {
+				ran++;
+			}
+		}
+		return ran;
+	}
+
+	private OptionalLong tryAcquire(String name, long now) {
+		if(jobLockRepository.acquire(name, owner, now, now + lockAtMost.toMillis()) == 0) {
+			return OptionalLong.empty();
+		}
+		Long token = jobLockRepository.findFencingToken(name, owner);
+		return token == null ? OptionalLong.empty() : OptionalLong.of(token);
+	}
+
+	private void createIfMissing(String name) {
+		if(!jobLockRepository.existsById(name)) {
+			try {
+				jobLockRepository.save(new JobLock(name));
+			} catch (DataIntegrityViolationException e) {
+				// another node created the row first
+			}
+		}
+	}
+
+	// lock times come from the database clock so skewed nodes agree on when a lease ends
+	private long databaseTime(String name) {
+		return jobLockRepository.findDatabaseTime(name).getTime();
+	}
+
+	public interface PartitionJob {
+
+		void run(int partition, BooleanSupplier leaseHeld);
+
+	}
+
+}
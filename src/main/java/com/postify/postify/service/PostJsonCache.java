@@ -0,0 +1,142 @@
+package com.postify.postify.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.FileAttachmentVM;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.model.UserVM;
+import com.postify.postify.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PostJsonCache {
+
+	BoundedCache<Long, CachedJson> cache;
+
+	JsonFactory jsonFactory = new JsonFactory();
+
+	public PostJsonCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+		super();
+		this.cache = new BoundedCache<>(appConfiguration.getPostJsonCacheSize());
+
+		FunctionCounter.builder("postify.post-json.cache", cache, BoundedCache::getHits)
+			.tag("result", "hit").register(meterRegistry);
+		FunctionCounter.builder("postify.post-json.cache", cache, BoundedCache::getMisses)
+			.tag("result", "miss").register(meterRegistry);
+		Gauge.builder("postify.post-json.cache.size", cache, BoundedCache::size).register(meterRegistry);
+	}
+
+	public SerializableString getJson(PostVM post) throws IOException {
+		CachedJson cached = cache.get(post.getId());
+		if(cached != null && cached.isWrittenFor(post)) {
+			return cached.json;
+		}
+		SerializedString json = new SerializedString(encode(post));
+		json.asUnquotedUTF8();
+		cache.put(post.getId(), new CachedJson(post, json));
+		return json;
+	}
+
+	public void remove(long postId) {
+		cache.remove(postId);
+	}
+
+	public void removeUser(long userId) {
+		cache.removeIf(cached -> cached.userId == userId);
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	private String encode(PostVM post) throws IOException {
+		StringWriter writer = new StringWriter(256);
+		try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+			generator.writeStartObject();
+			generator.writeNumberField("id", post.getId());
+			generator.writeStringField("content", post.getContent());
+			generator.writeNumberField("date", post.getDate());
+			generator.writeFieldName("user");
+			writeUser(generator, post.getUser());
+			generator.writeFieldName("attachment");
+			writeAttachment(generator, post.getAttachment());
+			generator.writeEndObject();
+		}
+		return writer.toString();
+	}
+
+	private void writeUser(JsonGenerator generator, UserVM user) throws IOException {
+		if(user == null) {
+			generator.writeNull();
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeNumberField("id", user.getId());
+		generator.writeStringField("username", user.getUsername());
+		generator.writeStringField("displayName", user.getDisplayName());
+		generator.writeStringField("image", user.getImage());
+		generator.writeStringField("imageThumbnail", user.getImageThumbnail());
+		generator.writeStringField("imageMedium", user.getImageMedium());
+		generator.writeEndObject();
+	}
+
+	private void writeAttachment(JsonGenerator generator, FileAttachmentVM attachment) throws IOException {
+		if(attachment == null) {
+			generator.writeNull();
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeStringField("name", attachment.getName());
+		generator.writeStringField("fileType", attachment.getFileType());
+		generator.writeStringField("thumbnail", attachment.getThumbnail());
+		generator.writeStringField("medium", attachment.getMedium());
+		generator.writeEndObject();
+	}
+
+	private static class CachedJson {
+
+		final long userId;
+
+		final String content;
+
+		final long date;
+
+		final UserVM user;
+
+		final FileAttachmentVM attachment;
+
+		final SerializableString json;
+
+		// copies of everything encode() writes, so any change to the fragment's inputs is a miss
+		CachedJson(PostVM post, SerializableString json) {
+			UserVM user = post.getUser();
+			FileAttachmentVM attachment = post.getAttachment();
+			this.userId = user == null ? 0 : user.getId();
+			this.content = post.getContent();
+			this.date = post.getDate();
+			this.user = user == null ? null : new UserVM(user.getId(), user.getUsername(), user.getDisplayName(),
+					user.getImage(), user.getImageThumbnail(), user.getImageMedium());
+			this.attachment = attachment == null ? null : new FileAttachmentVM(attachment.getName(), attachment.getFileType(),
+					attachment.getThumbnail(), attachment.getMedium());
+			this.json = json;
+		}
+
+		boolean isWrittenFor(PostVM post) {
+			return post.getDate() == date
+					&& Objects.equals(post.getContent(), content)
+					&& Objects.equals(post.getUser(), user)
+					&& Objects.equals(post.getAttachment(), attachment);
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+package com.postify.postify.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.repository.PostRepository;
+import com.postify.postify.util.SearchCursor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PostSearchIndex {
+
+	private static final int MIN_TOKEN_LENGTH = 2;
+
+	private static final int MAX_TOKEN_LENGTH = 64;
+
+	private static final int REBUILD_PAGE_SIZE = 1000;
+
+	Map<String, Postings> postings = new HashMap<>();
+
+	ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	PostRepository postRepository;
+
+	int candidateLimit;
+
+	boolean authoritative;
+
+	boolean rebuilding;
+
+	Set<Long> tombstones = new HashSet<>();
+
+	public PostSearchIndex(PostRepository postRepository, AppConfiguration appConfiguration) {
+		super();
+		this.postRepository = postRepository;
+		this.candidateLimit = appConfiguration.getSearchCandidateLimit();
+		this.authoritative = appConfiguration.isSingleNode();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildOnStartup() {
+		if(!authoritative) {
+			return;
+		}
+		Thread rebuild = new Thread(this::rebuild, "post-search-rebuild");
+		rebuild.setDaemon(true);
+		rebuild.start();
+	}
+
+	public void rebuild() {
+		lock.writeLock().lock();
+		try {
+			rebuilding = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			long afterId = Long.MIN_VALUE;
+			List<Object[]> page;
+			do {
+				page = postRepository.findContentAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+				List<TokenizedPost> tokenized = page.parallelStream()
+						.map(row -> new TokenizedPost((Long) row[0], tokenize((String) row[1])))
+						.collect(Collectors.toList());
+				lock.writeLock().lock();
+				try {
+					// a page read before a delete must not bring the deleted post back
+					tokenized.stream()
+						.filter(post -> !tombstones.contains(post.id))
+						.forEach(post -> addTerms(post.id, post.terms));
+				} finally {
+					lock.writeLock().unlock();
+				}
+				if(!page.isEmpty()) {
+					afterId = (Long) page.get(page.size() - 1)[0];
+				}
+			} while(page.size() == REBUILD_PAGE_SIZE);
+		} finally {
+			lock.writeLock().lock();
+			try {
+				rebuilding = false;
+				tombstones.clear();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	public void add(long id, String content) {
+		if(!authoritative) {
+			return;
+		}
+		Map<String, Integer> terms = tokenize(content);
+		lock.writeLock().lock();
+		try {
+			addTerms(id, terms);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long id, String content) {
+		if(!authoritative) {
+			return;
+		}
+		Map<String, Integer> terms = tokenize(content);
+		lock.writeLock().lock();
+		try {
+			if(rebuilding) {
+				tombstones.add(id);
+			}
+			for(String term : terms.keySet()) {
+				Postings list = postings.get(term);
+				if(list != null && list.remove(id) && list.size == 0) {
+					postings.remove(term);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// null when other nodes write posts this index never sees, callers then search the database
+	public SearchResult search(String query, SearchCursor cursor, int limit) {
+		if(!authoritative) {
+			return null;
+		}
+		SearchResult empty = new SearchResult(Collections.emptyList(), cursor.getWindowStart(), cursor.getWindowEnd());
+		List<String> terms = new ArrayList<>(tokenize(query).keySet());
+		if(terms.isEmpty()) {
+			return empty;
+		}
+		List<Hit> candidates = new ArrayList<>();
+		long windowStart = cursor.getWindowStart();
+		long windowEnd = cursor.getWindowEnd();
+		lock.readLock().lock();
+		try {
+			List<Postings> lists = new ArrayList<>(terms.size());
+			for(String term : terms) {
+				Postings list = postings.get(term);
+				if(list == null) {
+					return empty;
+				}
+				lists.add(list);
+			}
+			lists.sort(Comparator.comparingInt(list -> list.size));
+			Postings shortest = lists.get(0);
+			int matched = 0;
+			for(int i = shortest.floorIndex(windowEnd); i >= 0 && shortest.ids[i] >= windowStart; i--) {
+				long id = shortest.ids[i];
+				int score = shortest.frequencies[i];
+				for(int j = 1; j < lists.size() && score > 0; j++) {
+					int frequency = lists.get(j).frequencyOf(id);
+					score = frequency == 0 ? 0 : score + frequency;
+				}
+				if(score == 0) {
+					continue;
+				}
+				if(cursor.isBefore(score, id)) {
+					candidates.add(new Hit(id, score));
+				}
+				if(cursor.isFirst()) {
+					if(matched++ == 0) {
+						windowEnd = id;
+					}
+					if(matched == candidateLimit) {
+						windowStart = id;
+						break;
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		candidates.sort(Comparator.comparingInt(Hit::getScore).thenComparingLong(Hit::getId).reversed());
+		List<Hit> hits = candidates.size() > limit ? candidates.subList(0, limit) : candidates;
+		return new SearchResult(hits, windowStart, windowEnd);
+	}
+
+	static Map<String, Integer> tokenize(String content) {
+		Map<String, Integer> terms = new HashMap<>();
+		if(content == null) {
+			return terms;
+		}
+		int start = -1;
+		for(int i = 0; i <= content.length(); i++) {
+			boolean tokenChar = i < content.length() && Character.isLetterOrDigit(content.charAt(i));
+			if(tokenChar && start < 0) {
+				start = i;
+			} else if(!tokenChar && start >= 0) {
+				int length = i - start;
+				if(length >= MIN_TOKEN_LENGTH && length <= MAX_TOKEN_LENGTH) {
+					terms.merge(content.substring(start, i).toLowerCase(), 1, Integer::sum);
+				}
+				start = -1;
+			}
+		}
+		return terms;
+	}
+
+	private void addTerms(long id, Map<String, Integer> terms) {
+		for(Map.Entry<String, Integer> term : terms.entrySet()) {
+			postings.computeIfAbsent(term.getKey(), key -> new Postings()).add(id, term.getValue());
+		}
+	}
+
+	public static class Hit {
+
+		private final long id;
+
+		private final int score;
+
+		Hit(long id, int score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public int getScore() {
+			return score;
+		}
+	}
+
+	public static class SearchResult {
+
+		private final List<Hit> hits;
+
+		private final long windowStart;
+
+		private final long windowEnd;
+
+		SearchResult(List<Hit> hits, long windowStart, long windowEnd) {
+			this.hits = hits;
+			this.windowStart = windowStart;
+			this.windowEnd = windowEnd;
+		}
+
+		public List<Hit> getHits() {
+			return hits;
+		}
+
+		public long getWindowStart() {
+			return windowStart;
+		}
+
+		public long getWindowEnd() {
+			return windowEnd;
+		}
+	}
+
+	private static class TokenizedPost {
+
+		final long id;
+
+		final Map<String, Integer> terms;
+
+		TokenizedPost(long id, Map<String, Integer> terms) {
+			this.id = id;
+			this.terms = terms;
+		}
+	}
+
+	private static class Postings {
+
+		long[] ids = new long[2];
+
+		short[] frequencies = new short[2];
+
+		int size;
+
+		void add(long id, int frequency) {
+			int position = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+			if(position < 0) {
+				position = -position - 1;
+			} else if(position < size) {
+				return;
+			}
+			if(size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+			ids[position] = id;
+			frequencies[position] = (short) Math.min(frequency, Short.MAX_VALUE);
+			size++;
+		}
+
+		boolean remove(long id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if(position < 0) {
+				return false;
+			}
+			System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+			System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+			size--;
+			return true;
+		}
+
+		int floorIndex(long id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			return position >= 0 ? position : -position - 2;
+		}
+
+		int frequencyOf(long id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			return position < 0 ? 0 : frequencies[position];
+		}
+	}
+
+}
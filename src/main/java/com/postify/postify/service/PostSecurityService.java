@@ -1,9 +1,6 @@
 package com.postify.postify.service;
 
-import java.util.Optional;
-
-import com.postify.postify.entity.Post;
-import com.postify.postify.entity.User;
+import com.postify.postify.model.AuthUser;
 import com.postify.postify.repository.PostRepository;
 import org.springframework.stereotype.Service;
 
@@ -17,13 +14,8 @@ public class PostSecurityService {
 		this.postRepository = postRepository;
 	}
 
-	public boolean isAllowedToDelete(long postId, User loggedInUser) {
-		Optional<Post> optionalPost = postRepository.findById(postId);
-		if(optionalPost.isPresent()) {
-			Post inDB = optionalPost.get();
-			return inDB.getUser().getId() == loggedInUser.getId();
-		}
-		return false;
+	public boolean isAllowedToDelete(long postId, AuthUser loggedInUser) {
+		return postRepository.existsByIdAndUserId(postId, loggedInUser.getId());
 	}
 
 }
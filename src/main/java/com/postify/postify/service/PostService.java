@@ -1,21 +1,59 @@
 package com.postify.postify.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import com.postify.postify.configuration.AppConfiguration;
 import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.entity.ImageJob;
 import com.postify.postify.entity.Post;
 import com.postify.postify.repository.FileAttachmentRepository;
 import com.postify.postify.repository.PostRepository;
 import com.postify.postify.entity.User;
+import com.postify.postify.event.ImageVariantsEvent;
+import com.postify.postify.exception.BadRequestException;
+import com.postify.postify.model.AuthUser;
+import com.postify.postify.model.BulkPostResultVM;
+import com.postify.postify.model.FeedVM;
+import com.postify.postify.model.FileAttachmentVM;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.util.FeedCursor;
+import com.postify.postify.util.SearchCursor;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Service
 public class PostService {
 	
+	private static final int MAX_FEED_SIZE = 100;
+	
+	private static final int SEARCH_SCAN_SIZE = 200;
+	
 	PostRepository postRepository;
 	
 	UserService userService;
@@ -23,14 +61,56 @@ public class PostService {
 	FileAttachmentRepository fileAttachmentRepository;
 	
 	FileService fileService;
+	
+	RecentPostBuffer recentPostBuffer;
+	
+	PostStreamService postStreamService;
+	
+	EntityTagService entityTagService;
+	
+	PostJsonCache postJsonCache;
+	
+	Validator validator;
+	
+	TransactionTemplate transactionTemplate;
+	
+	int bulkMaxPosts;
+	
+	int bulkChunkSize;
+	
+	PostSearchIndex postSearchIndex;
+	
+	PostTagService postTagService;
+	
+	AttachmentLeaseService attachmentLeaseService;
 
 	public PostService(PostRepository postRepository, UserService userService,
-					   FileAttachmentRepository fileAttachmentRepository, FileService fileService) {
+					   FileAttachmentRepository fileAttachmentRepository, FileService fileService,
+					   RecentPostBuffer recentPostBuffer, PostStreamService postStreamService,
+					   EntityTagService entityTagService, PostJsonCache postJsonCache,
+					   Validator validator, PlatformTransactionManager transactionManager,
+					   AppConfiguration appConfiguration, PostSearchIndex postSearchIndex,
+					   PostTagService postTagService, AttachmentLeaseService attachmentLeaseService) {
 		super();
 		this.postRepository = postRepository;
 		this.userService = userService;
 		this.fileAttachmentRepository = fileAttachmentRepository;
 		this.fileService = fileService;
+		this.recentPostBuffer = recentPostBuffer;
+		this.postStreamService = postStreamService;
+		this.entityTagService = entityTagService;
+		this.postJsonCache = postJsonCache;
+		this.validator = validator;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.bulkMaxPosts = appConfiguration.getBulkMaxPosts();
+		this.bulkChunkSize = appConfiguration.getBulkChunkSize();
+		this.postSearchIndex = postSearchIndex;
+		this.postTagService = postTagService;
+		this.attachmentLeaseService = attachmentLeaseService;
+	}
+	
+	public Post save(AuthUser author, Post post) {
+		return save(userService.getReference(author.getId()), post);
 	}
 	
 	public Post save(User user, Post post) {
@@ -41,55 +121,316 @@ public class PostService {
 			inDB.setPost(post);
 			post.setAttachment(inDB);
 		}
-		return postRepository.save(post);
+		Post saved = postRepository.save(post);
+		if(saved.getAttachment() != null) {
+			attachmentLeaseService.claim(saved.getAttachment().getId());
+		}
+		postSearchIndex.add(saved.getId(), saved.getContent());
+		postTagService.addTags(Collections.singletonMap(saved.getId(), saved.getContent()));
+		PostVM postVM = new PostVM(saved);
+		recentPostBuffer.append(postVM);
+		postStreamService.publish(postVM);
+		return saved;
+	}
+
+	public List<BulkPostResultVM> saveAll(AuthUser author, List<Post> posts) {
+		if(posts.size() > bulkMaxPosts) {
+			throw new BadRequestException("At most " + bulkMaxPosts + " posts can be created at once");
+		}
+		List<BulkPostResultVM> results = new ArrayList<>(Collections.nCopies(posts.size(), null));
+		List<Integer> valid = new ArrayList<>();
+		for(int index = 0; index < posts.size(); index++) {
+			Set<ConstraintViolation<Post>> violations = validator.validate(posts.get(index));
+			if(violations.isEmpty()) {
+				valid.add(index);
+				continue;
+			}
+			BulkPostResultVM invalid = new BulkPostResultVM(index, BulkPostResultVM.INVALID, null, "Validation error");
+			Map<String, String> validationErrors = new HashMap<>();
+			for(ConstraintViolation<Post> violation : violations) {
+				validationErrors.put(violation.getPropertyPath().toString(), violation.getMessage());
+			}
+			invalid.setValidationErrors(validationErrors);
+			results.set(index, invalid);
+		}
+		
+		Date timestamp = new Date();
+		List<PostVM> created = new ArrayList<>();
+		for(int from = 0; from < valid.size(); from += bulkChunkSize) {
+			List<Integer> chunk = valid.subList(from, Math.min(from + bulkChunkSize, valid.size()));
+			List<BulkPostResultVM> chunkResults = new ArrayList<>(chunk.size());
+			List<PostVM> chunkCreated = new ArrayList<>(chunk.size());
+			try {
+				transactionTemplate.executeWithoutResult(status ->
+					saveChunk(author.getId(), posts, chunk, timestamp, chunkResults, chunkCreated));
+				chunkResults.forEach(result -> results.set(result.getIndex(), result));
+				created.addAll(chunkCreated);
+			} catch (DataAccessException | TransactionException e) {
+				for(int index : chunk) {
+					results.set(index, new BulkPostResultVM(index, BulkPostResultVM.FAILED, null, "Post could not be saved"));
+				}
+			}
+		}
+		
+		if(!created.isEmpty()) {
+			Map<Long, String> contentByPostId = new LinkedHashMap<>();
+			created.forEach(postVM -> contentByPostId.put(postVM.getId(), postVM.getContent()));
+			postTagService.addTags(contentByPostId);
+			for(PostVM postVM : created) {
+				postSearchIndex.add(postVM.getId(), postVM.getContent());
+				recentPostBuffer.append(postVM);
+				postStreamService.publish(postVM);
+			}
+		}
+		return results;
+	}
+	
+	private void saveChunk(long userId, List<Post> posts, List<Integer> chunk, Date timestamp,
+						   List<BulkPostResultVM> chunkResults, List<PostVM> chunkCreated) {
+		User user = userService.getReference(userId);
+		Set<Long> attachmentIds = chunk.stream()
+				.map(posts::get)
+				.filter(post -> post.getAttachment() != null)
+				.map(post -> post.getAttachment().getId())
+				.collect(Collectors.toSet());
+		Map<Long, FileAttachment> attachments = fileAttachmentRepository.findAllById(attachmentIds).stream()
+				.collect(Collectors.toMap(FileAttachment::getId, Function.identity()));
+		
+		List<Post> toSave = new ArrayList<>(chunk.size());
+		List<Integer> toSaveIndexes = new ArrayList<>(chunk.size());
+		List<Long> claimed = new ArrayList<>();
+		for(int index : chunk) {
+			Post post = posts.get(index);
+			if(post.getAttachment() != null) {
+				FileAttachment inDB = attachments.remove(post.getAttachment().getId());
+				if(inDB == null || inDB.getPost() != null) {
+					chunkResults.add(new BulkPostResultVM(index, BulkPostResultVM.FAILED, null, "Attachment is not available"));
+					continue;
+				}
+				inDB.setPost(post);
+				post.setAttachment(inDB);
+				claimed.add(inDB.getId());
+			}
+			post.setId(0);
+			post.setTimestamp(timestamp);
+			post.setUser(user);
+			toSave.add(post);
+			toSaveIndexes.add(index);
+		}
+		
+		postRepository.saveAll(toSave);
+		postRepository.flush();
+		attachmentLeaseService.claimAll(claimed);
+		for(int i = 0; i < toSave.size(); i++) {
+			Post saved = toSave.get(i);
+			chunkCreated.add(new PostVM(saved));
+			chunkResults.add(new BulkPostResultVM(toSaveIndexes.get(i), BulkPostResultVM.CREATED, saved.getId(), null));
+		}
+	}
+
+	public String getPostsTag(String username) {
+		if(username != null) {
+			return entityTagService.postsOfUserTag(userService.getIdByUsername(username));
+		}
+		return entityTagService.postsTag();
+	}
+
+	public Page<PostVM> getAllPosts(Pageable pageable) {
+		return postRepository.findAllPostVMs(pageable);
 	}
 
-	public Page<Post> getAllPosts(Pageable pageable) {
-		return postRepository.findAll(pageable);
+	public Page<PostVM> getPostsOfUser(String username, Pageable pageable) {
+		long userId = userService.getIdByUsername(username);
+		return postRepository.findPostVMsByUserId(userId, pageable);
 	}
 
-	public Page<Post> getPostsOfUser(String username, Pageable pageable) {
-		User inDB = userService.getByUsername(username);
-		return postRepository.findByUser(inDB, pageable);
+	public Slice<PostVM> getFeed(String username, long beforeId, int size) {
+		Pageable pageable = PageRequest.of(0, Math.max(1, Math.min(size, MAX_FEED_SIZE)), Sort.by(Sort.Direction.DESC, "id"));
+		if(username != null) {
+			long userId = userService.getIdByUsername(username);
+			return postRepository.findPostVMSliceBeforeByUserId(beforeId, userId, pageable);
+		}
+		return postRepository.findPostVMSliceBefore(beforeId, pageable);
 	}
 
-	public Page<Post> getOldPosts(long id, String username, Pageable pageable) {
-		Specification<Post> spec = Specification.where(idLessThan(id));
+	public FeedVM search(String query, String cursor, int size) {
+		int limit = Math.max(1, Math.min(size, MAX_FEED_SIZE));
+		SearchCursor searchCursor = SearchCursor.decode(cursor);
+		PostSearchIndex.SearchResult result = postSearchIndex.search(query, searchCursor, limit + 1);
+		if(result == null) {
+			return searchContent(query, searchCursor, limit);
+		}
+		List<PostSearchIndex.Hit> hits = result.getHits();
+		boolean hasNext = hits.size() > limit;
+		if(hasNext) {
+			hits = hits.subList(0, limit);
+		}
+		if(hits.isEmpty()) {
+			return new FeedVM(Collections.emptyList(), null);
+		}
+		List<PostVM> content = findInOrder(hits.stream().mapToLong(PostSearchIndex.Hit::getId).toArray());
+		PostSearchIndex.Hit last = hits.get(hits.size() - 1);
+		String nextCursor = hasNext
+				? SearchCursor.encode(last.getScore(), last.getId(), result.getWindowStart(), result.getWindowEnd()) : null;
+		return new FeedVM(content, nextCursor);
+	}
+
+	private FeedVM searchContent(String query, SearchCursor cursor, int limit) {
+		Set<String> terms = PostSearchIndex.tokenize(query).keySet();
+		if(terms.isEmpty()) {
+			return new FeedVM(Collections.emptyList(), null);
+		}
+		// the longest term narrows the scan most, the rest are matched on the same tokens the index uses
+		String longest = Collections.max(terms, Comparator.comparingInt(String::length));
+		Pageable pageable = PageRequest.of(0, SEARCH_SCAN_SIZE, Sort.by(Sort.Direction.DESC, "id"));
+		List<PostVM> content = new ArrayList<>();
+		long beforeId = cursor.getId();
+		Slice<PostVM> page;
+		do {
+			page = postRepository.findPostVMSliceBeforeByContent(beforeId, "%" + longest + "%", pageable);
+			for(PostVM post : page) {
+				beforeId = post.getId();
+				if(!PostSearchIndex.tokenize(post.getContent()).keySet().containsAll(terms)) {
+					continue;
+				}
+				content.add(post);
+				if(content.size() > limit) {
+					break;
+				}
+			}
+		} while(content.size() <= limit && page.hasNext());
+		boolean hasNext = content.size() > limit;
+		if(hasNext) {
+			content = content.subList(0, limit);
+		}
+		String nextCursor = hasNext
+				? SearchCursor.encode(0, content.get(limit - 1).getId(), Long.MIN_VALUE, Long.MAX_VALUE) : null;
+		return new FeedVM(content, nextCursor);
+	}
+
+	public FeedVM getTagFeed(String tag, long beforeId, int size) {
+		return getTaggedFeed(PostTagService.hashtag(tag), beforeId, size);
+	}
+
+	public Page<PostVM> getOldTagPosts(String tag, long id, Pageable pageable) {
+		return postRepository.findPostVMsBeforeByTag(id, PostTagService.hashtag(tag), pageable);
+	}
+
+	public List<PostVM> getNewTagPosts(String tag, long afterId, Sort sort) {
+		return getNewTaggedPosts(PostTagService.hashtag(tag), afterId, sort);
+	}
+
+	public FeedVM getMentionFeed(String username, long beforeId, int size) {
+		userService.getIdByUsername(username);
+		return getTaggedFeed(PostTagService.mention(username), beforeId, size);
+	}
+
+	public Page<PostVM> getOldMentions(String username, long id, Pageable pageable) {
+		userService.getIdByUsername(username);
+		return postRepository.findPostVMsBeforeByTag(id, PostTagService.mention(username), pageable);
+	}
+
+	public List<PostVM> getNewMentions(String username, long afterId, Sort sort) {
+		userService.getIdByUsername(username);
+		return getNewTaggedPosts(PostTagService.mention(username), afterId, sort);
+	}
+
+	private FeedVM getTaggedFeed(String tag, long beforeId, int size) {
+		int limit = Math.max(1, Math.min(size, MAX_FEED_SIZE));
+		long[] ids = postTagService.findBefore(tag, beforeId, limit + 1);
+		List<PostVM> content;
+		boolean hasNext;
+		if(ids != null) {
+			content = findInOrder(ids);
+			hasNext = content.size() > limit;
+			if(hasNext) {
+				content = content.subList(0, limit);
+			}
+		} else {
+			Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "id"));
+			Slice<PostVM> posts = postRepository.findPostVMSliceBeforeByTag(beforeId, tag, pageable);
+			content = posts.getContent();
+			hasNext = posts.hasNext();
+		}
+		String nextCursor = hasNext && !content.isEmpty() ? FeedCursor.encode(content.get(content.size() - 1).getId()) : null;
+		return new FeedVM(content, nextCursor);
+	}
+
+	private List<PostVM> getNewTaggedPosts(String tag, long afterId, Sort sort) {
+		long[] ids = postTagService.findAfter(tag, afterId);
+		if(ids == null) {
+			return postRepository.findPostVMsAfterByTag(afterId, tag, sort);
+		}
+		List<PostVM> content = findInOrder(ids);
+		Sort.Order idOrder = sort.getOrderFor("id");
+		if(idOrder == null || !idOrder.isAscending()) {
+			Collections.reverse(content);
+		}
+		return content;
+	}
+
+	private List<PostVM> findInOrder(long[] ids) {
+		if(ids.length == 0) {
+			return new ArrayList<>();
+		}
+		List<Long> idList = Arrays.stream(ids).boxed().collect(Collectors.toList());
+		Map<Long, PostVM> posts = postRepository.findPostVMsByIds(idList).stream()
+				.collect(Collectors.toMap(PostVM::getId, Function.identity()));
+		return idList.stream()
+				.map(posts::get)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+	}
+
+	public SseEmitter subscribe(String username) {
+		if(username != null) {
+			userService.getIdByUsername(username);
+		}
+		return postStreamService.subscribe(username);
+	}
+
+	public Page<PostVM> getOldPosts(long id, String username, Pageable pageable) {
 		if(username != null) {			
-			User inDB = userService.getByUsername(username);
-			spec = spec.and(userIs(inDB));
+			long userId = userService.getIdByUsername(username);
+			return postRepository.findPostVMsBeforeByUserId(id, userId, pageable);
 		}
-		return postRepository.findAll(spec, pageable);
+		return postRepository.findPostVMsBefore(id, pageable);
 	}
 
 
-	public List<Post> getNewPosts(long id, String username, Pageable pageable) {
-		Specification<Post> spec = Specification.where(idGreaterThan(id));
+	public List<PostVM> getNewPosts(long id, String username, Pageable pageable) {
+		Long userId = null;
 		if(username != null) {			
-			User inDB = userService.getByUsername(username);
-			spec = spec.and(userIs(inDB));
+			userId = userService.getIdByUsername(username);
 		}
-		return postRepository.findAll(spec, pageable.getSort());
+		Sort.Order idOrder = pageable.getSort().getOrderFor("id");
+		List<PostVM> recent = recentPostBuffer.findNewer(id, userId, idOrder != null && idOrder.isAscending());
+		if(recent != null) {
+			return recent;
+		}
+		if(userId != null) {
+			return postRepository.findPostVMsAfterByUserId(id, userId, pageable.getSort());
+		}
+		return postRepository.findPostVMsAfter(id, pageable.getSort());
 	}
 
 	public long getNewPostsCount(long id, String username) {
 		Specification<Post> spec = Specification.where(idGreaterThan(id));
+		Long userId = null;
 		if(username != null) {			
-			User inDB = userService.getByUsername(username);
-			spec = spec.and(userIs(inDB));
+			userId = userService.getIdByUsername(username);
+			spec = spec.and(userIs(userId));
+		}
+		long recentCount = recentPostBuffer.countNewer(id, userId);
+		if(recentCount >= 0) {
+			return recentCount;
 		}
 		return postRepository.count(spec);
 	}
 
-	private Specification<Post> userIs(User user){
+	private Specification<Post> userIs(long userId){
 		return (root, query, criteriaBuilder) -> {
-			return criteriaBuilder.equal(root.get("user"), user);
-		};
-	}
-
-	private Specification<Post> idLessThan(long id){
-		return (root, query, criteriaBuilder) -> {
-			return criteriaBuilder.lessThan(root.get("id"), id);
+			return criteriaBuilder.equal(root.get("user").get("id"), userId);
 		};
 	}
 
@@ -101,11 +442,30 @@ public class PostService {
 
 	public void deletePost(long id) {
 		Post post = postRepository.getOne(id);
-		if(post.getAttachment() != null) {
-			fileService.deleteAttachmentImage(post.getAttachment().getName());
-		}
+		String content = post.getContent();
+		String attachmentName = post.getAttachment() == null ? null : post.getAttachment().getName();
 		postRepository.deleteById(id);
-		
+		entityTagService.postsChanged();
+		if(attachmentName != null) {
+			fileService.releaseAttachmentImage(attachmentName);
+		}
+		postSearchIndex.remove(id, content);
+		postTagService.removeTags(id, content);
+		recentPostBuffer.remove(id);
+		postJsonCache.remove(id);
+	}
+
+	@EventListener
+	public void onImageVariants(ImageVariantsEvent event) {
+		if(!ImageJob.ATTACHMENT.equals(event.getKind())) {
+			return;
+		}
+		for(FileAttachment attachment: fileAttachmentRepository.findByNameAndPostIsNotNull(event.getName())) {
+			Post post = attachment.getPost();
+			userService.touch(post.getUser().getId());
+			recentPostBuffer.updateAttachment(post.getId(), new FileAttachmentVM(attachment));
+			postJsonCache.remove(post.getId());
+		}
 	}
 	
 	
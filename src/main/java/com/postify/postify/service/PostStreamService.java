@@ -0,0 +1,242 @@
+package com.postify.postify.service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.PostVM;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Service
+public class PostStreamService {
+
+	private static final String ALL_POSTS = "";
+
+	private static final Object HEARTBEAT = new Object();
+
+	private static final int MAX_BATCH = 16;
+
+	private static final int IDLE = 0;
+
+	private static final int SENDING = 1;
+
+	private static final int INTERRUPTING = 2;
+
+	AppConfiguration appConfiguration;
+
+	ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+	ExecutorService dispatcher;
+
+	public PostStreamService(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+		super();
+		this.appConfiguration = appConfiguration;
+		this.dispatcher = Executors.newFixedThreadPool(appConfiguration.getStreamDispatchThreads());
+		Gauge.builder("postify.stream.subscribers", this, PostStreamService::getSubscriberCount).register(meterRegistry);
+	}
+
+	public SseEmitter subscribe(String username) {
+		String key = username == null ? ALL_POSTS : username;
+		SseEmitter emitter = newEmitter();
+		Subscriber subscriber = new Subscriber(key, emitter);
+		subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+		emitter.onCompletion(() -> remove(subscriber));
+		emitter.onTimeout(() -> remove(subscriber));
+		emitter.onError(e -> remove(subscriber));
+		return emitter;
+	}
+
+	public void publish(PostVM post) {
+		deliver(subscribers.get(ALL_POSTS), post);
+		deliver(subscribers.get(post.getUser().getUsername()), post);
+	}
+
+	@Scheduled(fixedRateString = "${postify.stream-heartbeat-ms:15000}")
+	public void heartbeat() {
+		for(Set<Subscriber> group: subscribers.values()) {
+			deliver(group, HEARTBEAT);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${postify.stream-watchdog-ms:1000}")
+	public void evictStalled() {
+		long now = System.currentTimeMillis();
+		for(Set<Subscriber> group: subscribers.values()) {
+			for(Subscriber subscriber: group) {
+				if(subscriber.isStalled(now)) {
+					evict(subscriber);
+				}
+			}
+		}
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.values().stream().mapToInt(Set::size).sum();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		for(Set<Subscriber> group: subscribers.values()) {
+			for(Subscriber subscriber: group) {
+				subscriber.close();
+			}
+		}
+		subscribers.clear();
+	}
+
+	SseEmitter newEmitter() {
+		return new SseEmitter(appConfiguration.getStreamTimeout().toMillis());
+	}
+
+	private void deliver(Set<Subscriber> group, Object event) {
+		if(group == null) {
+			return;
+		}
+		for(Subscriber subscriber: group) {
+			subscriber.offer(event);
+		}
+	}
+
+	private void remove(Subscriber subscriber) {
+		Set<Subscriber> group = subscribers.get(subscriber.key);
+		if(group != null) {
+			group.remove(subscriber);
+		}
+	}
+
+	private void evict(Subscriber subscriber) {
+		remove(subscriber);
+		subscriber.closed = true;
+		subscriber.pending.clear();
+		if(!subscriber.interruptSend()) {
+			subscriber.close();
+		}
+	}
+
+	private class Subscriber implements Runnable {
+
+		final String key;
+
+		final SseEmitter emitter;
+
+		final BlockingQueue<Object> pending = new ArrayBlockingQueue<>(appConfiguration.getStreamQueueCapacity());
+
+		final AtomicBoolean scheduled = new AtomicBoolean();
+
+		final AtomicBoolean completed = new AtomicBoolean();
+
+		final AtomicLong sendingSince = new AtomicLong();
+
+		final AtomicInteger state = new AtomicInteger(IDLE);
+
+		volatile Thread writer;
+
+		volatile boolean closed;
+
+		Subscriber(String key, SseEmitter emitter) {
+			this.key = key;
+			this.emitter = emitter;
+		}
+
+		void offer(Object event) {
+			if(closed) {
+				return;
+			}
+			if(isStalled(System.currentTimeMillis()) || !pending.offer(event)) {
+				evict(this);
+				return;
+			}
+			schedule();
+		}
+
+		boolean isStalled(long now) {
+			long since = sendingSince.get();
+			return since != 0 && now - since > appConfiguration.getStreamWriteTimeout().toMillis();
+		}
+
+		void close() {
+			if(completed.compareAndSet(false, true)) {
+				emitter.complete();
+			}
+		}
+
+		boolean interruptSend() {
+			if(!state.compareAndSet(SENDING, INTERRUPTING)) {
+				return false;
+			}
+			// the writer cannot leave SENDING until we are done, so it is still running this subscriber
+			writer.interrupt();
+			state.set(IDLE);
+			return true;
+		}
+
+		void send(SseEmitter.SseEventBuilder event) throws IOException {
+			state.set(SENDING);
+			try {
+				emitter.send(event);
+			} finally {
+				if(!state.compareAndSet(SENDING, IDLE)) {
+					while(state.get() == INTERRUPTING) {
+						Thread.yield();
+					}
+					Thread.interrupted();
+				}
+			}
+		}
+
+		void schedule() {
+			if(scheduled.compareAndSet(false, true)) {
+				dispatcher.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			writer = Thread.currentThread();
+			boolean failed = false;
+			try {
+				Object event;
+				int sent = 0;
+				while(!closed && sent++ < MAX_BATCH && (event = pending.poll()) != null) {
+					sendingSince.set(System.currentTimeMillis());
+					if(event == HEARTBEAT) {
+						send(SseEmitter.event().comment("heartbeat"));
+					} else {
+						PostVM post = (PostVM) event;
+						send(SseEmitter.event().name("post").id(String.valueOf(post.getId())).data(post));
+					}
+					sendingSince.set(0);
+				}
+			} catch (IOException | IllegalStateException e) {
+				failed = true;
+			} finally {
+				sendingSince.set(0);
+				writer = null;
+				scheduled.set(false);
+			}
+			if(failed || closed) {
+				evict(this);
+				return;
+			}
+			if(!pending.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+}
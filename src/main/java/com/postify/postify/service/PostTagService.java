@@ -0,0 +1,194 @@
+package com.postify.postify.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.PostTag;
+import com.postify.postify.repository.PostTagRepository;
+import com.postify.postify.util.BoundedCache;
+import org.springframework.stereotype.Service;
+
+@Service
+public class PostTagService {
+
+	public static final String HASHTAG = "#";
+
+	public static final String MENTION = "@";
+
+	private static final Pattern TAG_PATTERN = Pattern.compile("(?<![\\p{L}\\p{N}_])([#@])([\\p{L}\\p{N}_\\-]{1,64})");
+
+	BoundedCache<String, TagTimeline> timelines;
+
+	PostTagRepository postTagRepository;
+
+	int timelineSize;
+
+	boolean authoritative;
+
+	public PostTagService(PostTagRepository postTagRepository, AppConfiguration appConfiguration) {
+		super();
+		this.postTagRepository = postTagRepository;
+		this.timelines = new BoundedCache<>(appConfiguration.getTagIndexSize());
+		this.timelineSize = appConfiguration.getTagTimelineSize();
+		this.authoritative = appConfiguration.isSingleNode();
+	}
+
+	public static String hashtag(String tag) {
+		return HASHTAG + tag.toLowerCase();
+	}
+
+	public static String mention(String username) {
+		return MENTION + username.toLowerCase();
+	}
+
+	public static Set<String> extractTags(String content) {
+		Set<String> tags = new LinkedHashSet<>();
+		if(content == null) {
+			return tags;
+		}
+		Matcher matcher = TAG_PATTERN.matcher(content);
+		while(matcher.find()) {
+			tags.add(matcher.group(1) + matcher.group(2).toLowerCase());
+		}
+		return tags;
+	}
+
+	public void addTags(Map<Long, String> contentByPostId) {
+		List<PostTag> postTags = new ArrayList<>();
+		for(Map.Entry<Long, String> post : contentByPostId.entrySet()) {
+			for(String tag : extractTags(post.getValue())) {
+				postTags.add(new PostTag(post.getKey(), tag));
+			}
+		}
+		if(postTags.isEmpty()) {
+			return;
+		}
+		postTagRepository.saveAll(postTags);
+		if(!authoritative) {
+			return;
+		}
+		for(PostTag postTag : postTags) {
+			timeline(postTag.getTag(), true).add(postTag.getPostId());
+		}
+	}
+
+	public void removeTags(long postId, String content) {
+		Set<String> tags = extractTags(content);
+		if(tags.isEmpty()) {
+			return;
+		}
+		postTagRepository.deleteByPostId(postId);
+		for(String tag : tags) {
+			TagTimeline timeline = timeline(tag, false);
+			if(timeline != null) {
+				timeline.remove(postId);
+			}
+		}
+	}
+
+	public long[] findBefore(String tag, long beforeId, int size) {
+		TagTimeline timeline = timeline(tag, false);
+		return timeline == null ? null : timeline.before(beforeId, size);
+	}
+
+	public long[] findAfter(String tag, long afterId) {
+		TagTimeline timeline = timeline(tag, false);
+		return timeline == null ? null : timeline.after(afterId);
+	}
+
+	public void clear() {
+		timelines.clear();
+	}
+
+	// timelines only see this node's writes, so with other writers every lookup misses and callers use PostTag queries
+	private synchronized TagTimeline timeline(String tag, boolean create) {
+		if(!authoritative) {
+			return null;
+		}
+		TagTimeline timeline = timelines.get(tag);
+		if(timeline == null && create) {
+			timeline = new TagTimeline(timelineSize);
+			timelines.put(tag, timeline);
+		}
+		return timeline;
+	}
+
+	private static class TagTimeline {
+
+		final long[] ids;
+
+		int size;
+
+		long floor = Long.MAX_VALUE;
+
+		TagTimeline(int capacity) {
+			this.ids = new long[capacity];
+		}
+
+		synchronized void add(long id) {
+			if(floor == Long.MAX_VALUE) {
+				floor = id - 1;
+			}
+			if(id <= floor) {
+				return;
+			}
+			int position = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+			if(position >= 0 && position < size) {
+				return;
+			}
+			if(position < 0) {
+				position = -position - 1;
+			}
+			if(size == ids.length) {
+				floor = Math.max(floor, ids[0]);
+				System.arraycopy(ids, 1, ids, 0, size - 1);
+				size--;
+				position--;
+				if(position < 0) {
+					return;
+				}
+			}
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			ids[position] = id;
+			size++;
+		}
+
+		synchronized void remove(long id) {
+			int position = Arrays.binarySearch(ids, 0, size, id);
+			if(position >= 0) {
+				System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+				size--;
+			}
+		}
+
+		synchronized long[] before(long beforeId, int count) {
+			int end = Arrays.binarySearch(ids, 0, size, beforeId);
+			end = end < 0 ? -end - 1 : end;
+			if(end < count) {
+				return null;
+			}
+			long[] result = new long[count];
+			for(int i = 0; i < count; i++) {
+				result[i] = ids[end - 1 - i];
+			}
+			return result;
+		}
+
+		synchronized long[] after(long afterId) {
+			if(afterId < floor) {
+				return null;
+			}
+			int start = Arrays.binarySearch(ids, 0, size, afterId);
+			start = start < 0 ? -start - 1 : start + 1;
+			return Arrays.copyOfRange(ids, start, size);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.postify.postify.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.FileAttachmentVM;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.model.UserVM;
+import org.springframework.stereotype.Service;
+
+@Service
+public class RecentPostBuffer {
+
+	private static final long NOT_COVERED = -1;
+
+	private static final NavigableMap<Long, PostVM> NO_POSTS = Collections.emptyNavigableMap();
+
+	int capacity;
+
+	boolean authoritative;
+
+	ConcurrentSkipListMap<Long, PostVM> posts = new ConcurrentSkipListMap<>();
+
+	Map<Long, ConcurrentSkipListMap<Long, PostVM>> postsByUser = new ConcurrentHashMap<>();
+
+	AtomicInteger size = new AtomicInteger();
+
+	AtomicLong floor = new AtomicLong(Long.MAX_VALUE);
+
+	public RecentPostBuffer(AppConfiguration appConfiguration) {
+		super();
+		this.capacity = appConfiguration.getRecentPostBufferSize();
+		this.authoritative = appConfiguration.isSingleNode();
+	}
+
+	public void append(PostVM post) {
+		if(!authoritative) {
+			return;
+		}
+		floor.compareAndSet(Long.MAX_VALUE, post.getId() - 1);
+		if(posts.put(post.getId(), post) == null) {
+			size.incrementAndGet();
+		}
+		postsByUser.compute(post.getUser().getId(), (userId, userPosts) -> {
+			ConcurrentSkipListMap<Long, PostVM> updated = userPosts == null ? new ConcurrentSkipListMap<>() : userPosts;
+			updated.put(post.getId(), post);
+			return updated;
+		});
+		while(size.get() > capacity) {
+			evictOldest();
+		}
+	}
+
+	public void remove(long id) {
+		PostVM removed = posts.remove(id);
+		if(removed != null) {
+			size.decrementAndGet();
+			removeFromUser(removed);
+		}
+	}
+
+	public void updateUser(UserVM user) {
+		NavigableMap<Long, PostVM> userPosts = postsByUser.getOrDefault(user.getId(), NO_POSTS);
+		for(PostVM post : userPosts.values()) {
+			replace(post, copyOf(post, user, post.getAttachment()));
+		}
+	}
+
+	public void updateAttachment(long postId, FileAttachmentVM attachment) {
+		PostVM post = posts.get(postId);
+		if(post != null) {
+			replace(post, copyOf(post, post.getUser(), attachment));
+		}
+	}
+
+	public List<PostVM> findNewer(long id, Long userId, boolean ascending) {
+		if(!authoritative || id < floor.get()) {
+			return null;
+		}
+		NavigableMap<Long, PostVM> newer = postsOf(userId).tailMap(id, false);
+		List<PostVM> result = new ArrayList<>(ascending ? newer.values() : newer.descendingMap().values());
+		if(id < floor.get()) {
+			return null;
+		}
+		return result;
+	}
+
+	public long countNewer(long id, Long userId) {
+		if(!authoritative || id < floor.get()) {
+			return NOT_COVERED;
+		}
+		long count = postsOf(userId).tailMap(id, false).size();
+		return id < floor.get() ? NOT_COVERED : count;
+	}
+
+	public void clear() {
+		floor.set(Long.MAX_VALUE);
+		posts.clear();
+		postsByUser.clear();
+		size.set(0);
+	}
+
+	private NavigableMap<Long, PostVM> postsOf(Long userId) {
+		return userId == null ? posts : postsByUser.getOrDefault(userId, NO_POSTS);
+	}
+
+	private void evictOldest() {
+		Map.Entry<Long, PostVM> oldest = posts.firstEntry();
+		if(oldest == null) {
+			return;
+		}
+		floor.accumulateAndGet(oldest.getKey(), Math::max);
+		PostVM evicted = posts.remove(oldest.getKey());
+		if(evicted != null) {
+			size.decrementAndGet();
+			removeFromUser(evicted);
+		}
+	}
+
+	private void removeFromUser(PostVM post) {
+		postsByUser.computeIfPresent(post.getUser().getId(), (userId, userPosts) -> {
+			userPosts.remove(post.getId());
+			return userPosts.isEmpty() ? null : userPosts;
+		});
+	}
+
+	private void replace(PostVM post, PostVM copy) {
+		if(posts.replace(post.getId(), post, copy)) {
+			ConcurrentSkipListMap<Long, PostVM> userPosts = postsByUser.get(post.getUser().getId());
+			if(userPosts != null) {
+				userPosts.replace(post.getId(), post, copy);
+			}
+		}
+	}
+
+	private PostVM copyOf(PostVM post, UserVM user, FileAttachmentVM attachment) {
+		PostVM copy = new PostVM();
+		copy.setId(post.getId());
+		copy.setContent(post.getContent());
+		copy.setDate(post.getDate());
+		copy.setAttachment(attachment);
+		copy.setUser(user);
+		return copy;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.postify.postify.service;
+
+import com.postify.postify.configuration.AppConfiguration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ScheduledJobService {
+
+	static final String ATTACHMENT_CLEANUP = "attachment-cleanup";
+
+	JobLockService jobLockService;
+
+	FileService fileService;
+
+	int attachmentCleanupPartitions;
+
+	public ScheduledJobService(JobLockService jobLockService, FileService fileService, AppConfiguration appConfiguration) {
+		super();
+		this.jobLockService = jobLockService;
+		this.fileService = fileService;
+		this.attachmentCleanupPartitions = appConfiguration.getAttachmentCleanupPartitions();
+	}
+
+	@Scheduled(cron = "${postify.attachment-cleanup-cron:0 0 3 * * *}")
+	public void cleanupStorage() {
+		jobLockService.runPartitioned(ATTACHMENT_CLEANUP, attachmentCleanupPartitions,
+				(partition, leaseHeld) -> fileService.cleanupStorage(attachmentCleanupPartitions, partition, leaseHeld));
+	}
+
+}
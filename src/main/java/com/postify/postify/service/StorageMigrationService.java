@@ -0,0 +1,112 @@
+package com.postify.postify.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class StorageMigrationService {
+
+	private static final int QUEUE_CAPACITY = 1024;
+
+	AppConfiguration appConfiguration;
+
+	public StorageMigrationService(AppConfiguration appConfiguration) {
+		super();
+		this.appConfiguration = appConfiguration;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void migrateOnStartup() {
+		if(!appConfiguration.isStorageMigrationOnStartup()) {
+			return;
+		}
+		Thread migration = new Thread(this::migrate, "storage-migration");
+		migration.setDaemon(true);
+		migration.start();
+	}
+
+	public int migrate() {
+		int threads = appConfiguration.getStorageMigrationThreads();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+		AtomicInteger moved = new AtomicInteger();
+		try {
+			submitFolder(appConfiguration.getFullProfileImagesPath(), executor, moved);
+			submitFolder(appConfiguration.getFullAttachmentsPath(), executor, moved);
+		} finally {
+			executor.shutdown();
+		}
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(moved.get() > 0) {
+			log.info("Moved {} stored files into the sharded layout", moved.get());
+		}
+		return moved.get();
+	}
+
+	private void submitFolder(String folder, ThreadPoolExecutor executor, AtomicInteger moved) {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(folder))) {
+			for(Path file : files) {
+				String name = file.getFileName().toString();
+				if(!Files.isRegularFile(file) || name.startsWith(FileService.UPLOAD_PREFIX)) {
+					continue;
+				}
+				executor.execute(() -> {
+					if(moveToShard(folder, name)) {
+						moved.incrementAndGet();
+					}
+				});
+			}
+		} catch (IOException e) {
+			log.warn("Could not list {} for migration", folder, e);
+		}
+	}
+
+	private boolean moveToShard(String folder, String name) {
+		Path flat = StorageLayout.flatPath(folder, name);
+		Path sharded = StorageLayout.shardedPath(folder, name);
+		try {
+			Files.createDirectories(sharded.getParent());
+			Files.move(flat, sharded, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (FileAlreadyExistsException e) {
+			return deleteDuplicate(flat);
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (IOException e) {
+			log.warn("Could not migrate {}", flat, e);
+			return false;
+		}
+	}
+
+	private boolean deleteDuplicate(Path flat) {
+		try {
+			return Files.deleteIfExists(flat);
+		} catch (IOException e) {
+			log.warn("Could not remove migrated duplicate {}", flat, e);
+			return false;
+		}
+	}
+
+}
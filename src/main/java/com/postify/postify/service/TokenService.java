@@ -0,0 +1,163 @@
+package com.postify.postify.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.User;
+import com.postify.postify.exception.UnauthorizedException;
+import com.postify.postify.model.AccessToken;
+import com.postify.postify.model.AuthUser;
+import com.postify.postify.repository.UserRepository;
+import com.postify.postify.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class TokenService {
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	SecretKeySpec keySpec;
+
+	Duration tokenTtl;
+
+	Duration maxSessionAge;
+
+	ThreadLocal<Mac> macs;
+
+	UserRepository userRepository;
+
+	BoundedCache<Long, AuthUser> users;
+
+	AtomicLong generation = new AtomicLong();
+
+	public TokenService(AppConfiguration appConfiguration, UserRepository userRepository, MeterRegistry meterRegistry) {
+		super();
+		this.keySpec = new SecretKeySpec(secretOf(appConfiguration.getTokenSecret()), HMAC_ALGORITHM);
+		this.tokenTtl = appConfiguration.getTokenTtl();
+		this.maxSessionAge = appConfiguration.getTokenMaxSessionAge();
+		this.macs = ThreadLocal.withInitial(this::createMac);
+		this.userRepository = userRepository;
+		this.users = new BoundedCache<>(appConfiguration.getAuthCacheSize(), appConfiguration.getAuthCacheTtl());
+
+		FunctionCounter.builder("postify.token.cache", users, BoundedCache::getHits)
+			.tag("result", "hit").register(meterRegistry);
+		FunctionCounter.builder("postify.token.cache", users, BoundedCache::getMisses)
+			.tag("result", "miss").register(meterRegistry);
+		Gauge.builder("postify.token.cache.size", users, BoundedCache::size).register(meterRegistry);
+	}
+
+	public AccessToken createToken(AuthUser user) {
+		return createToken(user, System.currentTimeMillis());
+	}
+
+	public AccessToken refreshToken(AuthUser user) {
+		if(user.getSessionStartedAt() == 0) {
+			return createToken(user);
+		}
+		if(System.currentTimeMillis() - user.getSessionStartedAt() > maxSessionAge.toMillis()) {
+			throw new UnauthorizedException("Session expired");
+		}
+		return createToken(user, user.getSessionStartedAt());
+	}
+
+	private AccessToken createToken(AuthUser user, long sessionStartedAt) {
+		long expiresAt = Math.min(System.currentTimeMillis() + tokenTtl.toMillis(), sessionStartedAt + maxSessionAge.toMillis());
+		String payload = user.getId() + ":" + sessionStartedAt + ":" + expiresAt + ":" + user.getCredentialVersion()
+				+ ":" + user.getUsername();
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		String token = encode(payloadBytes) + "." + encode(sign(payloadBytes));
+		return new AccessToken(token, expiresAt);
+	}
+
+	public AuthUser verifyToken(String token) {
+		int separator = token.indexOf('.');
+		if(separator < 0) {
+			return null;
+		}
+		try {
+			byte[] payloadBytes = Base64.getUrlDecoder().decode(token.substring(0, separator));
+			byte[] signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+			if(!MessageDigest.isEqual(signature, sign(payloadBytes))) {
+				return null;
+			}
+			String[] claims = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 5);
+			if(claims.length != 5 || Long.parseLong(claims[2]) < System.currentTimeMillis()) {
+				return null;
+			}
+			long id = Long.parseLong(claims[0]);
+			long credentialVersion = Long.parseLong(claims[3]);
+			AuthUser user = users.get(id);
+			if(user == null || user.getCredentialVersion() < credentialVersion) {
+				// a newer token means another node changed the user since this entry was cached
+				user = loadUser(id);
+			}
+			if(user == null || user.getCredentialVersion() != credentialVersion) {
+				return null;
+			}
+			return new AuthUser(user, Long.parseLong(claims[1]));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	public synchronized void invalidate(long userId) {
+		generation.incrementAndGet();
+		users.remove(userId);
+	}
+
+	private AuthUser loadUser(long id) {
+		long expectedGeneration = generation.get();
+		User inDB = userRepository.findById(id).orElse(null);
+		if(inDB == null) {
+			return null;
+		}
+		AuthUser user = new AuthUser(inDB);
+		user.eraseCredentials();
+		synchronized (this) {
+			if(generation.get() == expectedGeneration) {
+				users.put(id, user);
+			}
+		}
+		return user;
+	}
+
+	private byte[] sign(byte[] payload) {
+		return macs.get().doFinal(payload);
+	}
+
+	private String encode(byte[] bytes) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	private byte[] secretOf(String configuredSecret) {
+		if(configuredSecret != null && !configuredSecret.isEmpty()) {
+			return configuredSecret.getBytes(StandardCharsets.UTF_8);
+		}
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		return secret;
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(keySpec);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.postify.postify.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.User;
+import com.postify.postify.repository.UserRepository;
+import com.postify.postify.util.BoundedCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserIdCache {
+
+	private static final long MISSING = -1;
+
+	BoundedCache<String, Long> cache;
+
+	BoundedCache<String, Boolean> missing;
+
+	UserRepository userRepository;
+
+	AtomicLong generation = new AtomicLong();
+
+	public UserIdCache(AppConfiguration appConfiguration, UserRepository userRepository, MeterRegistry meterRegistry) {
+		super();
+		this.cache = new BoundedCache<>(appConfiguration.getUserIdCacheSize());
+		this.missing = new BoundedCache<>(appConfiguration.getUserIdCacheSize(), appConfiguration.getUserIdMissTtl());
+		this.userRepository = userRepository;
+
+		FunctionCounter.builder("postify.user-id.cache", cache, BoundedCache::getHits)
+			.tag("result", "hit").register(meterRegistry);
+		FunctionCounter.builder("postify.user-id.cache", cache, BoundedCache::getMisses)
+			.tag("result", "miss").register(meterRegistry);
+		Gauge.builder("postify.user-id.cache.size", cache, BoundedCache::size).register(meterRegistry);
+	}
+
+	public Long findId(String username) {
+		Long id = cached(username);
+		if(id == null) {
+			long expectedGeneration = generation.get();
+			Long inDB = userRepository.findIdByUsername(username);
+			id = inDB == null ? MISSING : inDB;
+			put(username, id, expectedGeneration);
+		}
+		return id == MISSING ? null : id;
+	}
+
+	public User findUser(String username) {
+		Long id = cached(username);
+		if(id != null) {
+			return id == MISSING ? null : userRepository.findById(id).orElse(null);
+		}
+		long expectedGeneration = generation.get();
+		User user = userRepository.findByUsername(username);
+		put(username, user == null ? MISSING : user.getId(), expectedGeneration);
+		return user;
+	}
+
+	public synchronized void invalidate(String username) {
+		generation.incrementAndGet();
+		cache.remove(username);
+		missing.remove(username);
+	}
+
+	public synchronized void clear() {
+		generation.incrementAndGet();
+		cache.clear();
+		missing.clear();
+	}
+
+	private Long cached(String username) {
+		Long id = cache.get(username);
+		if(id == null && missing.containsKey(username)) {
+			return MISSING;
+		}
+		return id;
+	}
+
+	private synchronized void put(String username, long id, long expectedGeneration) {
+		if(generation.get() != expectedGeneration) {
+			return;
+		}
+		if(id == MISSING) {
+			missing.put(username, Boolean.TRUE);
+		} else {
+			cache.put(username, id);
+		}
+	}
+
+}
@@ -2,13 +2,21 @@ package com.postify.postify.service;
 
 import java.io.IOException;
 
+import com.postify.postify.entity.ImageJob;
 import com.postify.postify.entity.User;
+import com.postify.postify.event.ImageVariantsEvent;
+import com.postify.postify.event.ProfileImageSavedEvent;
+import com.postify.postify.model.AuthUser;
 import com.postify.postify.model.UserUpdateVM;
+import com.postify.postify.model.UserVM;
 import com.postify.postify.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.postify.postify.exception.NotFoundException;
 
@@ -21,23 +29,54 @@ public class UserService {
 	
 	FileService fileService;
 	
-	public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FileService fileService) {
+	CredentialCache credentialCache;
+	
+	RecentPostBuffer recentPostBuffer;
+	
+	UserIdCache userIdCache;
+	
+	EntityTagService entityTagService;
+	
+	PostJsonCache postJsonCache;
+	
+	TokenService tokenService;
+	
+	ApplicationEventPublisher eventPublisher;
+	
+	public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FileService fileService,
+					   CredentialCache credentialCache, RecentPostBuffer recentPostBuffer, UserIdCache userIdCache,
+					   EntityTagService entityTagService, PostJsonCache postJsonCache, TokenService tokenService,
+					   ApplicationEventPublisher eventPublisher) {
 		super();
 		this.userRepository = userRepository;
 		this.passwordEncoder = passwordEncoder;
 		this.fileService = fileService;
+		this.credentialCache = credentialCache;
+		this.recentPostBuffer = recentPostBuffer;
+		this.userIdCache = userIdCache;
+		this.entityTagService = entityTagService;
+		this.postJsonCache = postJsonCache;
+		this.tokenService = tokenService;
+		this.eventPublisher = eventPublisher;
 	}
 	
 	public User save(User user) {
 		user.setPassword(passwordEncoder.encode(user.getPassword()));
-		return userRepository.save(user);
+		if(user.getId() != 0) {
+			user.setCredentialVersion(user.getCredentialVersion() + 1);
+		}
+		User saved = userRepository.save(user);
+		credentialCache.invalidate(saved.getUsername());
+		userIdCache.invalidate(saved.getUsername());
+		tokenService.invalidate(saved.getId());
+		return saved;
 	}
 
-	public Page<User> getUsers(User loggedInUser, Pageable pageable) {
+	public Page<UserVM> getUsers(AuthUser loggedInUser, Pageable pageable) {
 		if(loggedInUser != null) {
-			return userRepository.findByUsernameNot(loggedInUser.getUsername(), pageable);
+			return userRepository.findUserVMsByUsernameNot(loggedInUser.getUsername(), pageable);
 		}
-		return userRepository.findAll(pageable);
+		return userRepository.findAllUserVMs(pageable);
 	}
 
 	public User getByUsername(String username) {
@@ -48,20 +87,89 @@ public class UserService {
 		return inDB;
 	}
 
+	public String getUserTag(String username) {
+		return entityTagService.userTag(getIdByUsername(username));
+	}
+
+	public long getIdByUsername(String username) {
+		Long id = userIdCache.findId(username);
+		if(id == null) {
+			throw new NotFoundException(username + " not found");
+		}
+		return id;
+	}
+
+	public void touch(long id) {
+		userRepository.touch(id);
+		entityTagService.postsChanged();
+	}
+
+	public User getReference(long id) {
+		return userRepository.getOne(id);
+	}
+
 	public User update(long id, UserUpdateVM userUpdate) {
 		User inDB = userRepository.getOne(id);
 		inDB.setDisplayName(userUpdate.getDisplayName());
+		String savedImageName = null;
 		if(userUpdate.getImage() != null) {
-			String savedImageName;
 			try {
 				savedImageName = fileService.saveProfileImage(userUpdate.getImage());
-				fileService.deleteProfileImage(inDB.getImage());
-				inDB.setImage(savedImageName);
+				replaceImage(inDB, savedImageName);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}			
 		}
-		return userRepository.save(inDB);
+		return saveUpdated(inDB, savedImageName);
+	}
+
+	public User updateImage(long id, MultipartFile image) {
+		User inDB = userRepository.getOne(id);
+		String savedImageName = null;
+		try {
+			savedImageName = fileService.saveProfileImage(image);
+			replaceImage(inDB, savedImageName);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return saveUpdated(inDB, savedImageName);
+	}
+
+	@EventListener
+	public void onImageVariants(ImageVariantsEvent event) {
+		if(!ImageJob.PROFILE.equals(event.getKind())) {
+			return;
+		}
+		User user = userRepository.findByImage(event.getName());
+		if(user != null) {
+			userChanged(user);
+		}
+	}
+
+	private void replaceImage(User inDB, String savedImageName) {
+		fileService.deleteProfileImage(inDB.getImage());
+		inDB.setImage(savedImageName);
+		inDB.setImageThumbnail(null);
+		inDB.setImageMedium(null);
+	}
+
+	private User saveUpdated(User inDB, String savedImageName) {
+		User updated = userRepository.save(inDB);
+		userChanged(updated);
+		if(savedImageName != null) {
+			// variants are recorded against the user row, so the pipeline only hears about the image once it is saved
+			eventPublisher.publishEvent(new ProfileImageSavedEvent(savedImageName));
+		}
+		return updated;
+	}
+
+	private void userChanged(User user) {
+		credentialCache.invalidate(user.getUsername());
+		userIdCache.invalidate(user.getUsername());
+		tokenService.invalidate(user.getId());
+		touch(user.getId());
+		postJsonCache.removeUser(user.getId());
+		recentPostBuffer.updateUser(new UserVM(user));
 	}
 
 }
@@ -0,0 +1,100 @@
+package com.postify.postify.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class BoundedCache<K, V> {
+
+	private final int maxSize;
+
+	private final long ttlMillis;
+
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	public BoundedCache(int maxSize) {
+		this(maxSize, null);
+	}
+
+	public BoundedCache(int maxSize, Duration ttl) {
+		this.maxSize = maxSize;
+		this.ttlMillis = ttl == null ? 0 : ttl.toMillis();
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				return size() > BoundedCache.this.maxSize;
+			}
+		};
+	}
+
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if(entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		if(entry.expiresAt < System.currentTimeMillis()) {
+			entries.remove(key);
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	public synchronized boolean containsKey(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		return entry != null && entry.expiresAt >= System.currentTimeMillis();
+	}
+
+	public synchronized void put(K key, V value) {
+		long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+		entries.put(key, new CacheEntry<>(value, expiresAt));
+	}
+
+	public synchronized V remove(K key) {
+		CacheEntry<V> removed = entries.remove(key);
+		return removed == null ? null : removed.value;
+	}
+
+	public synchronized void removeIf(Predicate<V> predicate) {
+		entries.values().removeIf(entry -> predicate.test(entry.value));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static class CacheEntry<V> {
+
+		final V value;
+
+		final long expiresAt;
+
+		CacheEntry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
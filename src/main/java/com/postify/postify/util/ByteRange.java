@@ -0,0 +1,69 @@
+package com.postify.postify.util;
+
+public class ByteRange {
+
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	private final long start;
+
+	private final long end;
+
+	private ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	public static ByteRange full(long length) {
+		return new ByteRange(0, length - 1);
+	}
+
+	public static ByteRange parse(String header, long length) {
+		if(header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = header.substring(BYTES_UNIT.length()).trim();
+		int dash = spec.indexOf('-');
+		if(dash < 0) {
+			return null;
+		}
+		try {
+			if(dash == 0) {
+				long suffix = Long.parseLong(spec.substring(1));
+				if(suffix <= 0 || length == 0) {
+					return UNSATISFIABLE;
+				}
+				return new ByteRange(Math.max(0, length - suffix), length - 1);
+			}
+			long start = Long.parseLong(spec.substring(0, dash));
+			String endSpec = spec.substring(dash + 1);
+			long end = endSpec.isEmpty() ? length - 1 : Long.parseLong(endSpec);
+			if(start < 0 || end < start) {
+				return null;
+			}
+			if(start >= length) {
+				return UNSATISFIABLE;
+			}
+			return new ByteRange(start, Math.min(end, length - 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	public String toContentRange(long length) {
+		return "bytes " + start + "-" + end + "/" + length;
+	}
+}
@@ -0,0 +1,35 @@
+package com.postify.postify.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.postify.postify.exception.BadRequestException;
+
+public class FeedCursor {
+
+	private static final String PREFIX = "id:";
+
+	private FeedCursor() {
+	}
+
+	public static String encode(long id) {
+		byte[] raw = (PREFIX + id).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+	}
+
+	public static long decode(String cursor) {
+		if(cursor == null || cursor.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if(raw.startsWith(PREFIX)) {
+				return Long.parseLong(raw.substring(PREFIX.length()));
+			}
+		} catch (IllegalArgumentException e) {
+			// falls through to the error below
+		}
+		throw new BadRequestException("Invalid cursor");
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.postify.postify.util;
+
+public class FrequencySketch {
+
+	private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final int MAX_COUNT = 15;
+
+	private final long[] table;
+
+	private final int tableMask;
+
+	private final int sampleSize;
+
+	private int additions;
+
+	public FrequencySketch(int expectedEntries) {
+		int length = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * length;
+	}
+
+	public int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		for(int i = 0; i < SEEDS.length; i++) {
+			int offset = counterOffset(hash, i);
+			frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & MAX_COUNT));
+		}
+		return frequency;
+	}
+
+	public void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for(int i = 0; i < SEEDS.length; i++) {
+			added |= incrementAt(indexOf(hash, i), counterOffset(hash, i));
+		}
+		if(added && ++additions == sampleSize) {
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int index, int offset) {
+		long mask = (long) MAX_COUNT << offset;
+		if((table[index] & mask) == mask) {
+			return false;
+		}
+		table[index] += 1L << offset;
+		return true;
+	}
+
+	private void reset() {
+		for(int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions /= 2;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return (int) h & tableMask;
+	}
+
+	private int counterOffset(int hash, int i) {
+		return ((hash >>> (i << 3)) & 0xF) << 2;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
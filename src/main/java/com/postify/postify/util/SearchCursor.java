@@ -0,0 +1,73 @@
+package com.postify.postify.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.postify.postify.exception.BadRequestException;
+
+public class SearchCursor {
+
+	private static final String PREFIX = "search:";
+
+	public static final SearchCursor FIRST = new SearchCursor(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+
+	private final int score;
+
+	private final long id;
+
+	private final long windowStart;
+
+	private final long windowEnd;
+
+	private SearchCursor(int score, long id, long windowStart, long windowEnd) {
+		this.score = score;
+		this.id = id;
+		this.windowStart = windowStart;
+		this.windowEnd = windowEnd;
+	}
+
+	public boolean isFirst() {
+		return this == FIRST;
+	}
+
+	public boolean isBefore(int score, long id) {
+		return score < this.score || (score == this.score && id < this.id);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getWindowStart() {
+		return windowStart;
+	}
+
+	public long getWindowEnd() {
+		return windowEnd;
+	}
+
+	public static String encode(int score, long id, long windowStart, long windowEnd) {
+		byte[] raw = (PREFIX + score + ":" + id + ":" + windowStart + ":" + windowEnd).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+	}
+
+	public static SearchCursor decode(String cursor) {
+		if(cursor == null || cursor.isEmpty()) {
+			return FIRST;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if(raw.startsWith(PREFIX)) {
+				String[] parts = raw.substring(PREFIX.length()).split(":");
+				if(parts.length == 4) {
+					return new SearchCursor(Integer.parseInt(parts[0]), Long.parseLong(parts[1]),
+							Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// falls through to the error below
+		}
+		throw new BadRequestException("Invalid cursor");
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.postify.postify.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class StorageLayout {
+
+	private static final int SHARD_WIDTH = 2;
+
+	private static final int SHARD_DEPTH = 2;
+
+	public static final String THUMBNAIL = "thumbnail";
+
+	public static final String MEDIUM = "medium";
+
+	public static final String[] VARIANTS = {THUMBNAIL, MEDIUM};
+
+	private StorageLayout() {
+	}
+
+	public static String shard(String name) {
+		String prefix = isHexPrefixed(name) ? name : String.format("%08x", name.hashCode());
+		StringBuilder path = new StringBuilder();
+		for(int level = 0; level < SHARD_DEPTH; level++) {
+			path.append(prefix, level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH).append('/');
+		}
+		return path.append(name).toString();
+	}
+
+	public static Path shardedPath(String folder, String name) {
+		return Paths.get(folder, shard(name));
+	}
+
+	public static Path flatPath(String folder, String name) {
+		return Paths.get(folder, name);
+	}
+
+	public static String variantName(String name, String variant) {
+		return name + "_" + variant;
+	}
+
+	private static boolean isHexPrefixed(String name) {
+		if(name.length() < SHARD_WIDTH * SHARD_DEPTH) {
+			return false;
+		}
+		for(int i = 0; i < SHARD_WIDTH * SHARD_DEPTH; i++) {
+			char c = name.charAt(i);
+			if(!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
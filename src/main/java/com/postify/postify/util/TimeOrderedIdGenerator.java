@@ -0,0 +1,77 @@
+package com.postify.postify.util;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+public class TimeOrderedIdGenerator implements IdentifierGenerator, Configurable {
+
+	public static final String NAME = "time-ordered";
+
+	public static final String NODE_ID_SETTING = "postify.node_id";
+
+	static final long EPOCH = 1577836800000L;
+
+	static final int NODE_BITS = 4;
+
+	static final int SEQUENCE_BITS = 8;
+
+	public static final long MILLIS_UNIT = 1L << (NODE_BITS + SEQUENCE_BITS);
+
+	private final AtomicLong lastTick = new AtomicLong();
+
+	private final LongSupplier clock;
+
+	private long nodeId;
+
+	public TimeOrderedIdGenerator() {
+		this.clock = System::currentTimeMillis;
+	}
+
+	TimeOrderedIdGenerator(int nodeId) {
+		this(nodeId, System::currentTimeMillis);
+	}
+
+	TimeOrderedIdGenerator(int nodeId, LongSupplier clock) {
+		this.nodeId = checkNodeId(nodeId);
+		this.clock = clock;
+	}
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		Integer configured = serviceRegistry.getService(ConfigurationService.class)
+				.getSetting(NODE_ID_SETTING, StandardConverters.INTEGER, 0);
+		this.nodeId = checkNodeId(configured);
+	}
+
+	@Override
+	public Serializable generate(SharedSessionContractImplementor session, Object object) {
+		return nextId();
+	}
+
+	long nextId() {
+		long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+		long tick = lastTick.accumulateAndGet(now, (last, candidate) -> Math.max(last + 1, candidate));
+		long millis = tick >>> SEQUENCE_BITS;
+		long sequence = tick & ((1L << SEQUENCE_BITS) - 1);
+		return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+	}
+
+	private static long checkNodeId(int nodeId) {
+		if(nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+			throw new MappingException("postify.node-id must be between 0 and " + ((1 << NODE_BITS) - 1));
+		}
+		return nodeId;
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.postify.postify.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TimingWheel<K> {
+
+	private final long tickMs;
+
+	private final int wheelSize;
+
+	private final List<List<Entry<K>>[]> levels = new ArrayList<>();
+
+	private final Map<K, Entry<K>> deadlines = new HashMap<>();
+
+	private long currentTime;
+
+	public TimingWheel(long tickMs, int wheelSize, long startMs) {
+		this.tickMs = tickMs;
+		this.wheelSize = wheelSize;
+		this.currentTime = startMs - startMs % tickMs;
+	}
+
+	public synchronized void schedule(K key, long expiresAt) {
+		Entry<K> entry = new Entry<>(key, expiresAt);
+		deadlines.put(key, entry);
+		place(entry);
+	}
+
+	public synchronized boolean cancel(K key) {
+		return deadlines.remove(key) != null;
+	}
+
+	public synchronized boolean contains(K key) {
+		return deadlines.containsKey(key);
+	}
+
+	public synchronized int size() {
+		return deadlines.size();
+	}
+
+	public synchronized List<K> advance(long now) {
+		List<K> expired = new ArrayList<>();
+		if(deadlines.isEmpty()) {
+			levels.clear();
+			currentTime = Math.max(currentTime, now - now % tickMs);
+			return expired;
+		}
+		while(currentTime + tickMs <= now) {
+			drain(0, currentTime / tickMs, expired);
+			currentTime += tickMs;
+			long span = tickMs;
+			for(int level = 1; level < levels.size(); level++) {
+				span *= wheelSize;
+				if(currentTime % span != 0) {
+					break;
+				}
+				drain(level, currentTime / span, expired);
+			}
+		}
+		return expired;
+	}
+
+	private void place(Entry<K> entry) {
+		long expiresAt = Math.max(entry.expiresAt, currentTime);
+		long span = tickMs;
+		for(int level = 0; ; level++) {
+			if(expiresAt / span - currentTime / span < wheelSize) {
+				List<Entry<K>>[] buckets = level(level);
+				int index = (int) (expiresAt / span % wheelSize);
+				if(buckets[index] == null) {
+					buckets[index] = new ArrayList<>();
+				}
+				buckets[index].add(entry);
+				return;
+			}
+			span *= wheelSize;
+		}
+	}
+
+	private void drain(int level, long slot, List<K> expired) {
+		if(level >= levels.size()) {
+			return;
+		}
+		List<Entry<K>>[] buckets = levels.get(level);
+		int index = (int) (slot % wheelSize);
+		List<Entry<K>> bucket = buckets[index];
+		if(bucket == null) {
+			return;
+		}
+		buckets[index] = null;
+		for(Entry<K> entry : bucket) {
+			if(deadlines.get(entry.key) != entry) {
+				continue;
+			}
+			if(level == 0) {
+				deadlines.remove(entry.key);
+				expired.add(entry.key);
+			} else {
+				place(entry);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Entry<K>>[] level(int level) {
+		while(levels.size() <= level) {
+			levels.add(new List[wheelSize]);
+		}
+		return levels.get(level);
+	}
+
+	private static class Entry<K> {
+
+		final K key;
+
+		final long expiresAt;
+
+		Entry(K key, long expiresAt) {
+			this.key = key;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
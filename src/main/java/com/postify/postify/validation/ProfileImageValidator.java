@@ -1,7 +1,5 @@
 package com.postify.postify.validation;
 
-import java.util.Base64;
-
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 
@@ -21,13 +19,11 @@ public class ProfileImageValidator implements ConstraintValidator<ProfileImage,
 			return true;
 		}
 		
-		byte[] decodedBytes = Base64.getDecoder().decode(value);
-		String fileType = fileService.detectType(decodedBytes);
-		if(fileType.equalsIgnoreCase("image/png") || fileType.equalsIgnoreCase("image/jpeg")) {
-			return true;
+		try {
+			return fileService.isSupportedProfileImage(fileService.detectBase64Type(value));
+		} catch (IllegalArgumentException e) {
+			return false;
 		}
-		
-		return false;
 	}
 
 }
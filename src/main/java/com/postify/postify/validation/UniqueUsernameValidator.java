@@ -3,20 +3,19 @@ package com.postify.postify.validation;
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 
-import com.postify.postify.entity.User;
-import com.postify.postify.repository.UserRepository;
+import com.postify.postify.service.UserIdCache;
 import com.postify.postify.validation.constraint.UniqueUsername;
 import org.springframework.beans.factory.annotation.Autowired;
 
 public class UniqueUsernameValidator implements ConstraintValidator<UniqueUsername, String>{
 	
 	@Autowired
-	UserRepository userRepository;
+	UserIdCache userIdCache;
 
 	@Override
 	public boolean isValid(String value, ConstraintValidatorContext context) {
 		
-		User inDB = userRepository.findByUsername(value);
+		Long inDB = userIdCache.findId(value);
 		if(inDB == null) {
 			return true;
 		}
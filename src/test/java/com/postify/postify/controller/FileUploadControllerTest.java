@@ -8,6 +8,7 @@ import java.io.IOException;
 import com.postify.postify.TestUtil;
 import com.postify.postify.entity.FileAttachment;
 import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,11 +26,14 @@ import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
 
 import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
 import com.postify.postify.repository.FileAttachmentRepository;
 import com.postify.postify.repository.UserRepository;
 import com.postify.postify.service.UserService;
+import com.postify.postify.service.UserIdCache;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -43,6 +47,9 @@ public class FileUploadControllerTest {
 	@Autowired
 	UserRepository userRepository;
 	
+	@Autowired
+	UserIdCache userIdCache;
+	
 	@Autowired
 	UserService userService;
 	
@@ -55,6 +62,7 @@ public class FileUploadControllerTest {
 	@BeforeEach
 	public void init() throws IOException {
 		userRepository.deleteAll();
+		userIdCache.clear();
 		fileAttachmentRepository.deleteAll();
 		testRestTemplate.getRestTemplate().getInterceptors().clear();
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
@@ -97,7 +105,7 @@ public class FileUploadControllerTest {
 		userService.save(TestUtil.createValidUser("user1"));
 		authenticate("user1");
 		ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(), FileAttachment.class);
-		String imagePath = appConfiguration.getFullAttachmentsPath() + "/" + response.getBody().getName();
+		String imagePath = StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), response.getBody().getName()).toString();
 		File storedImage = new File(imagePath);
 		assertThat(storedImage.exists()).isTrue();
 	}
@@ -120,6 +128,30 @@ public class FileUploadControllerTest {
 		assertThat(storedFile.getFileType()).isEqualTo("image/png");
 		
 	}
+
+	@Test
+	public void uploadFile_whenFileExceedsMaxAttachmentSize_receivePayloadTooLarge() {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		appConfiguration.setMaxAttachmentSize(DataSize.ofBytes(100));
+		ResponseEntity<Object> response = uploadFile(getRequestEntity(), Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+	}
+
+	@Test
+	public void uploadFile_whenFileExceedsMaxAttachmentSize_fileNotSavedToDatabase() {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		appConfiguration.setMaxAttachmentSize(DataSize.ofBytes(100));
+		uploadFile(getRequestEntity(), Object.class);
+		assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+	}
+	
+	@AfterEach
+	public void resetMaxAttachmentSize() {
+		appConfiguration.setMaxAttachmentSize(DataSize.ofMegabytes(20));
+	}
+	
 	public <T> ResponseEntity<T> uploadFile(HttpEntity<?> requestEntity, Class<T> responseType){
 		return testRestTemplate.exchange(API_1_0_POSTS_UPLOAD, HttpMethod.POST, requestEntity, responseType);
 	}
@@ -12,6 +12,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -22,6 +24,7 @@ import com.postify.postify.exception.ApiError;
 import com.postify.postify.entity.User;
 import com.postify.postify.repository.UserRepository;
 import com.postify.postify.service.UserService;
+import com.postify.postify.service.UserIdCache;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -29,18 +32,24 @@ public class LoginControllerTest {
 	
 	private static final String API_1_0_LOGIN = "/api/1.0/login";
 	
+	private static final String API_1_0_LOGIN_REFRESH = "/api/1.0/login/refresh";
+	
 	@Autowired
 	TestRestTemplate testRestTemplate;
 	
 	@Autowired
 	UserRepository userRepository;
 	
+	@Autowired
+	UserIdCache userIdCache;
+	
 	@Autowired
 	UserService userService;
 	
 	@BeforeEach
 	public void cleanup() {
 		userRepository.deleteAll();
+		userIdCache.clear();
 		testRestTemplate.getRestTemplate().getInterceptors().clear();
 	}
 	
@@ -133,6 +142,56 @@ public class LoginControllerTest {
 		assertThat(body.containsKey("password")).isFalse();
 	}
 	
+	@Test
+	public void postLogin_withValidCredentials_receiveToken() {
+		userService.save(TestUtil.createValidUser());
+		authenticate();
+		ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+		Map<String, Object> body = response.getBody();
+		assertThat(body.get("token")).isNotNull();
+	}
+	
+	@Test
+	public void postRefresh_withValidToken_receiveOk() {
+		userService.save(TestUtil.createValidUser());
+		authenticate();
+		ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+		String token = (String) response.getBody().get("token");
+		testRestTemplate.getRestTemplate().getInterceptors().clear();
+		
+		ResponseEntity<Map<String, Object>> refreshResponse = refresh(token);
+		assertThat(refreshResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(refreshResponse.getBody().get("token")).isNotNull();
+	}
+	
+	@Test
+	public void postRefresh_withTamperedToken_receiveUnauthorized() {
+		userService.save(TestUtil.createValidUser());
+		authenticate();
+		ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+		String token = (String) response.getBody().get("token");
+		testRestTemplate.getRestTemplate().getInterceptors().clear();
+		
+		ResponseEntity<Map<String, Object>> refreshResponse = refresh("x" + token);
+		assertThat(refreshResponse.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+	
+	@Test
+	public void postRefresh_afterPasswordChanged_receiveUnauthorized() {
+		userService.save(TestUtil.createValidUser());
+		authenticate();
+		ResponseEntity<Map<String, Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+		String token = (String) response.getBody().get("token");
+		testRestTemplate.getRestTemplate().getInterceptors().clear();
+		
+		User inDB = userRepository.findByUsername("test-user");
+		inDB.setPassword("N3wPassword");
+		userService.save(inDB);
+		
+		ResponseEntity<Map<String, Object>> refreshResponse = refresh(token);
+		assertThat(refreshResponse.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+	
 	private void authenticate() {
 		testRestTemplate.getRestTemplate()
 			.getInterceptors().add(new BasicAuthenticationInterceptor("test-user", "P4ssword"));
@@ -145,5 +204,12 @@ public class LoginControllerTest {
 	public <T> ResponseEntity<T> login(ParameterizedTypeReference<T> responseType){
 		return testRestTemplate.exchange(API_1_0_LOGIN, HttpMethod.POST ,null, responseType);
 	}
+	
+	public ResponseEntity<Map<String, Object>> refresh(String token){
+		HttpHeaders headers = new HttpHeaders();
+		headers.setBearerAuth(token);
+		return testRestTemplate.exchange(API_1_0_LOGIN_REFRESH, HttpMethod.POST, new HttpEntity<>(headers),
+				new ParameterizedTypeReference<Map<String, Object>>() {});
+	}
 
 }
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,6 +28,8 @@ import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -36,17 +39,26 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
 import com.postify.postify.exception.ApiError;
+import com.postify.postify.repository.AttachmentLeaseRepository;
 import com.postify.postify.repository.FileAttachmentRepository;
 import com.postify.postify.service.FileService;
 import com.postify.postify.entity.Post;
 import com.postify.postify.repository.PostRepository;
+import com.postify.postify.repository.PostTagRepository;
 import com.postify.postify.service.PostService;
+import com.postify.postify.service.PostTagService;
+import com.postify.postify.service.RecentPostBuffer;
+import com.postify.postify.model.BulkPostResultVM;
+import com.postify.postify.model.FeedVM;
 import com.postify.postify.model.PostVM;
 import com.postify.postify.model.GenericResponse;
+import com.postify.postify.model.UserUpdateVM;
 import com.postify.postify.entity.User;
 import com.postify.postify.repository.UserRepository;
 import com.postify.postify.service.UserService;
+import com.postify.postify.service.UserIdCache;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -63,6 +75,9 @@ public class PostControllerTest {
 	@Autowired
 	UserRepository userRepository;
 	
+	@Autowired
+	UserIdCache userIdCache;
+	
 	@Autowired
 	PostRepository postRepository;
 	
@@ -78,6 +93,18 @@ public class PostControllerTest {
 	@Autowired
 	AppConfiguration appConfiguration;
 	
+	@Autowired
+	RecentPostBuffer recentPostBuffer;
+	
+	@Autowired
+	PostTagRepository postTagRepository;
+	
+	@Autowired
+	PostTagService postTagService;
+	
+	@Autowired
+	AttachmentLeaseRepository attachmentLeaseRepository;
+	
 	@PersistenceUnit
 	private EntityManagerFactory entityManagerFactory;
 	
@@ -86,6 +113,11 @@ public class PostControllerTest {
 		fileAttachmentRepository.deleteAll();
 		postRepository.deleteAll();
 		userRepository.deleteAll();
+		userIdCache.clear();
+		recentPostBuffer.clear();
+		postTagRepository.deleteAll();
+		postTagService.clear();
+		attachmentLeaseRepository.deleteAll();
 		testRestTemplate.getRestTemplate().getInterceptors().clear();
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
 	}
@@ -114,6 +146,47 @@ public class PostControllerTest {
 		assertThat(response.getBody().getStatus()).isEqualTo(HttpStatus.UNAUTHORIZED.value());
 	}
 	
+	@Test
+	public void postPosts_whenUserIsUnauthorized_receiveUnauthorized() {
+		ResponseEntity<Object> response = postPosts(Arrays.asList(TestUtil.createValidPost()), Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+	
+	@Test
+	public void postPosts_whenPostsAreValidAndUserIsAuthorized_postsSavedToDatabase() {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		List<Post> posts = IntStream.rangeClosed(1, 250).mapToObj(i -> TestUtil.createValidPost()).collect(Collectors.toList());
+		ResponseEntity<List<BulkPostResultVM>> response = postPosts(posts, new ParameterizedTypeReference<List<BulkPostResultVM>>() {});
+		assertThat(response.getBody()).allMatch(result -> BulkPostResultVM.CREATED.equals(result.getStatus()));
+		assertThat(postRepository.count()).isEqualTo(250);
+	}
+	
+	@Test
+	public void postPosts_whenOnePostIsInvalid_receiveInvalidResultForThatPostOnly() {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		Post invalid = TestUtil.createValidPost();
+		invalid.setContent("short");
+		List<Post> posts = Arrays.asList(TestUtil.createValidPost(), invalid, TestUtil.createValidPost());
+		ResponseEntity<List<BulkPostResultVM>> response = postPosts(posts, new ParameterizedTypeReference<List<BulkPostResultVM>>() {});
+		assertThat(response.getBody().get(1).getStatus()).isEqualTo(BulkPostResultVM.INVALID);
+		assertThat(response.getBody().get(1).getValidationErrors().get("content")).isNotNull();
+		assertThat(postRepository.count()).isEqualTo(2);
+	}
+	
+	@Test
+	public void postPosts_whenPostsHaveAttachments_attachmentsLinkedToPosts() throws IOException {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		FileAttachment savedFile = fileService.saveAttachment(createFile());
+		Post post = TestUtil.createValidPost();
+		post.setAttachment(savedFile);
+		ResponseEntity<List<BulkPostResultVM>> response = postPosts(Arrays.asList(post), new ParameterizedTypeReference<List<BulkPostResultVM>>() {});
+		FileAttachment inDB = fileAttachmentRepository.findById(savedFile.getId()).get();
+		assertThat(inDB.getPost().getId()).isEqualTo(response.getBody().get(0).getId());
+	}
+	
 	@Test
 	public void postPost_whenPostIsValidAndUserIsAuthorized_postSavedToDatabase() {
 		userService.save(TestUtil.createValidUser("user1"));
@@ -241,6 +314,21 @@ public class PostControllerTest {
 		assertThat(inDB.getPost().getId()).isEqualTo(response.getBody().getId());
 	}
 
+	@Test
+	public void postPost_whenPostHasFileAttachmentAndUserIsAuthorized_attachmentLeaseIsClaimed() throws IOException {
+		userService.save(TestUtil.createValidUser("user1"));
+		authenticate("user1");
+		
+		FileAttachment savedFile = fileService.saveAttachment(createFile());
+		assertThat(attachmentLeaseRepository.existsById(savedFile.getId())).isTrue();
+		
+		Post post = TestUtil.createValidPost();
+		post.setAttachment(savedFile);
+		postPost(post, PostVM.class);
+		
+		assertThat(attachmentLeaseRepository.existsById(savedFile.getId())).isFalse();
+	}
+
 	@Test
 	public void postPost_whenPostHasFileAttachmentAndUserIsAuthorized_postFileAttachmentRelationIsUpdatedInDatabase() throws IOException {
 		userService.save(TestUtil.createValidUser("user1"));
@@ -315,6 +403,62 @@ public class PostControllerTest {
 		assertThat(storedPost.getUser().getUsername()).isEqualTo("user1");
 	}
 	
+	@Test
+	public void getPosts_whenETagMatches_receiveNotModified() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		String eTag = getPosts(new ParameterizedTypeReference<Object>() {}).getHeaders().getETag();
+		
+		ResponseEntity<Object> response = getIfNoneMatch(API_1_0_POSTS, eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+	
+	@Test
+	public void getPosts_whenPostAddedAfterETag_receiveOk() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		String eTag = getPosts(new ParameterizedTypeReference<Object>() {}).getHeaders().getETag();
+		postService.save(user, TestUtil.createValidPost());
+		
+		ResponseEntity<Object> response = getIfNoneMatch(API_1_0_POSTS, eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+	
+	@Test
+	public void getPosts_whenPostDeletedAfterETag_receiveOk() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		Post post = postService.save(user, TestUtil.createValidPost());
+		String eTag = getPosts(new ParameterizedTypeReference<Object>() {}).getHeaders().getETag();
+		postService.deletePost(post.getId());
+		
+		ResponseEntity<Object> response = getIfNoneMatch(API_1_0_POSTS, eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+	
+	@Test
+	public void getPosts_whenAuthorUpdatedAfterETag_receiveOk() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		String eTag = getPosts(new ParameterizedTypeReference<Object>() {}).getHeaders().getETag();
+		UserUpdateVM userUpdate = new UserUpdateVM();
+		userUpdate.setDisplayName("new-display-name");
+		userService.update(user.getId(), userUpdate);
+		
+		ResponseEntity<Object> response = getIfNoneMatch(API_1_0_POSTS, eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+	
+	@Test
+	public void getPostsOfUser_whenETagMatches_receiveNotModified() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		String eTag = getPostsOfUser("user1", new ParameterizedTypeReference<Object>() {}).getHeaders().getETag();
+		
+		ResponseEntity<Object> response = getIfNoneMatch("/api/1.0/users/user1/posts", eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+	
 	@Test
 	public void getPostsOfUser_whenUserExists_receiveOk() {
 		userService.save(TestUtil.createValidUser("user1"));
@@ -567,6 +711,126 @@ public class PostControllerTest {
 		assertThat(response.getBody().get("count")).isEqualTo(1);
 	}
 	
+	@Test
+	public void getFeed_whenThereArePosts_receiveNewestPostsWithNextCursor() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, TestUtil.createValidPost());
+		postService.save(user, TestUtil.createValidPost());
+		Post third = postService.save(user, TestUtil.createValidPost());
+		
+		ResponseEntity<FeedVM> response = getFeed(API_1_0_POSTS + "/feed?size=1");
+		assertThat(response.getBody().getContent().get(0).getId()).isEqualTo(third.getId());
+		assertThat(response.getBody().getNextCursor()).isNotNull();
+	}
+	
+	@Test
+	public void getFeed_whenFollowingCursorToLastPage_receiveRemainingPostsWithoutNextCursor() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post first = postService.save(user, TestUtil.createValidPost());
+		postService.save(user, TestUtil.createValidPost());
+		postService.save(user, TestUtil.createValidPost());
+		
+		String cursor = getFeed(API_1_0_POSTS + "/feed?size=2").getBody().getNextCursor();
+		ResponseEntity<FeedVM> response = getFeed(API_1_0_POSTS + "/feed?size=2&cursor=" + cursor);
+		assertThat(response.getBody().getContent().size()).isEqualTo(1);
+		assertThat(response.getBody().getContent().get(0).getId()).isEqualTo(first.getId());
+		assertThat(response.getBody().getNextCursor()).isNull();
+	}
+	
+	@Test
+	public void searchPosts_whenPostsContainTerm_receiveMatchingPosts() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post matching = TestUtil.createValidPost();
+		matching.setContent("searching for a needle in a haystack");
+		matching = postService.save(user, matching);
+		postService.save(user, TestUtil.createValidPost());
+		
+		ResponseEntity<FeedVM> response = getFeed(API_1_0_POSTS + "/search?q=needle");
+		assertThat(response.getBody().getContent()).extracting(PostVM::getId).containsExactly(matching.getId());
+	}
+	
+	@Test
+	public void searchPosts_whenPostDeleted_receiveNoPosts() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post post = TestUtil.createValidPost();
+		post.setContent("a post about vanishing content");
+		post = postService.save(user, post);
+		authenticate("user1");
+		deletePost(post.getId(), Object.class);
+		
+		ResponseEntity<FeedVM> response = getFeed(API_1_0_POSTS + "/search?q=vanishing");
+		assertThat(response.getBody().getContent()).isEmpty();
+	}
+	
+	@Test
+	public void getTagFeed_whenPostsHaveHashtag_receiveTaggedPostsNewestFirst() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post first = postService.save(user, createPostWithContent("first post about #Spring"));
+		postService.save(user, TestUtil.createValidPost());
+		Post second = postService.save(user, createPostWithContent("second post about #spring"));
+		
+		ResponseEntity<FeedVM> response = getFeed("/api/1.0/tags/spring/posts");
+		assertThat(response.getBody().getContent()).extracting(PostVM::getId).containsExactly(second.getId(), first.getId());
+	}
+	
+	@Test
+	public void getNewTagPosts_whenPostsAfterProvidedId_receiveNewerTaggedPosts() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post first = postService.save(user, createPostWithContent("first post about #spring"));
+		Post second = postService.save(user, createPostWithContent("second post about #spring"));
+		
+		ResponseEntity<List<PostVM>> response = testRestTemplate.exchange("/api/1.0/tags/spring/posts/" + first.getId() + "?direction=after",
+				HttpMethod.GET, null, new ParameterizedTypeReference<List<PostVM>>() {});
+		assertThat(response.getBody()).extracting(PostVM::getId).containsExactly(second.getId());
+	}
+	
+	@Test
+	public void getTagFeed_whenAllTaggedPostsFitInPage_receiveNoNextCursor() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		postService.save(user, createPostWithContent("first post about #spring"));
+		postService.save(user, createPostWithContent("second post about #spring"));
+		
+		ResponseEntity<FeedVM> response = getFeed("/api/1.0/tags/spring/posts?size=2");
+		assertThat(response.getBody().getContent()).hasSize(2);
+		assertThat(response.getBody().getNextCursor()).isNull();
+	}
+	
+	@Test
+	public void getOldTagPosts_whenPostsBeforeProvidedId_receivePageOfOlderTaggedPosts() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post first = postService.save(user, createPostWithContent("first post about #spring"));
+		postService.save(user, TestUtil.createValidPost());
+		Post second = postService.save(user, createPostWithContent("second post about #spring"));
+		
+		ResponseEntity<TestPage<PostVM>> response = testRestTemplate.exchange("/api/1.0/tags/spring/posts/" + second.getId() + "?direction=before",
+				HttpMethod.GET, null, new ParameterizedTypeReference<TestPage<PostVM>>() {});
+		assertThat(response.getBody().getTotalElements()).isEqualTo(1);
+		assertThat(response.getBody().getContent()).extracting(PostVM::getId).containsExactly(first.getId());
+	}
+	
+	@Test
+	public void getMentionFeed_whenPostsMentionUser_receiveMentioningPosts() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		userService.save(TestUtil.createValidUser("user2"));
+		Post mention = postService.save(user, createPostWithContent("hello @user2, welcome aboard"));
+		postService.save(user, TestUtil.createValidPost());
+		
+		ResponseEntity<FeedVM> response = getFeed("/api/1.0/users/user2/mentions");
+		assertThat(response.getBody().getContent()).extracting(PostVM::getId).containsExactly(mention.getId());
+	}
+	
+	@Test
+	public void getMentionFeed_whenUserDoesNotExist_receiveNotFound() {
+		ResponseEntity<Object> response = testRestTemplate.getForEntity("/api/1.0/users/unknown-user/mentions", Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+	
+	@Test
+	public void getFeedOfUser_whenUserDoesNotExist_receiveNotFound() {
+		ResponseEntity<Object> response = testRestTemplate.getForEntity("/api/1.0/users/unknown-user/posts/feed", Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+	
 	@Test
 	public void deletePost_whenUserIsUnAuthorized_receiveUnauthorized() {
 		ResponseEntity<Object> response = deletePost(555, Object.class);
@@ -666,10 +930,27 @@ public class PostControllerTest {
 		long postId = response.getBody().getId();
 		
 		deletePost(postId, Object.class);
-		String attachmentFolderPath = appConfiguration.getFullAttachmentsPath() + "/" + savedFile.getName();
+		String attachmentFolderPath = StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), savedFile.getName()).toString();
 		File storedImage = new File(attachmentFolderPath);
 		assertThat(storedImage.exists()).isFalse();
 	}
+	
+	private Post createPostWithContent(String content) {
+		Post post = TestUtil.createValidPost();
+		post.setContent(content);
+		return post;
+	}
+	
+	public ResponseEntity<Object> getIfNoneMatch(String path, String eTag){
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		return testRestTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), Object.class);
+	}
+	
+	public ResponseEntity<FeedVM> getFeed(String path){
+		return testRestTemplate.getForEntity(path, FeedVM.class);
+	}
+	
 	public <T> ResponseEntity<T> deletePost(long postId, Class<T> responseType){
 		return testRestTemplate.exchange(API_1_0_POSTS + "/" + postId, HttpMethod.DELETE, null, responseType);
 	}
@@ -714,6 +995,14 @@ public class PostControllerTest {
 		return testRestTemplate.exchange(API_1_0_POSTS, HttpMethod.GET, null, responseType);
 	}
 	
+	private <T> ResponseEntity<T> postPosts(List<Post> posts, Class<T> responseType) {
+		return testRestTemplate.postForEntity(API_1_0_POSTS + "/bulk", posts, responseType);
+	}
+	
+	private <T> ResponseEntity<T> postPosts(List<Post> posts, ParameterizedTypeReference<T> responseType) {
+		return testRestTemplate.exchange(API_1_0_POSTS + "/bulk", HttpMethod.POST, new HttpEntity<>(posts), responseType);
+	}
+	
 	private <T> ResponseEntity<T> postPost(Post post, Class<T> responseType) {
 		return testRestTemplate.postForEntity(API_1_0_POSTS, post, responseType);
 	}
@@ -0,0 +1,201 @@
+package com.postify.postify.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import com.postify.postify.TestUtil;
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.FileAttachment;
+import com.postify.postify.entity.Post;
+import com.postify.postify.entity.User;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.repository.FileAttachmentRepository;
+import com.postify.postify.repository.PostRepository;
+import com.postify.postify.repository.UserRepository;
+import com.postify.postify.service.FileService;
+import com.postify.postify.service.PostService;
+import com.postify.postify.service.RecentPostBuffer;
+import com.postify.postify.service.UserService;
+import com.postify.postify.service.UserIdCache;
+import com.postify.postify.util.TestPage;
+import org.apache.commons.io.FileUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class PostQueryCountTest {
+	
+	private static final String API_1_0_POSTS = "/api/1.0/posts";
+	
+	@Autowired
+	TestRestTemplate testRestTemplate;
+	
+	@Autowired
+	UserService userService;
+	
+	@Autowired
+	UserRepository userRepository;
+	
+	@Autowired
+	UserIdCache userIdCache;
+	
+	@Autowired
+	PostRepository postRepository;
+	
+	@Autowired
+	PostService postService;
+	
+	@Autowired
+	FileAttachmentRepository fileAttachmentRepository;
+	
+	@Autowired
+	FileService fileService;
+	
+	@Autowired
+	RecentPostBuffer recentPostBuffer;
+	
+	@Autowired
+	AppConfiguration appConfiguration;
+	
+	@PersistenceUnit
+	private EntityManagerFactory entityManagerFactory;
+	
+	Statistics statistics;
+	
+	@BeforeEach
+	public void cleanup() throws IOException {
+		fileAttachmentRepository.deleteAll();
+		postRepository.deleteAll();
+		userRepository.deleteAll();
+		userIdCache.clear();
+		recentPostBuffer.clear();
+		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+	
+	@Test
+	public void getPosts_whenPostsHaveDifferentUsersAndAttachments_runsTagQueryAndSingleQuery() throws IOException {
+		createPostsOfDifferentUsers(5);
+		
+		ResponseEntity<Object> response = countingQueries(API_1_0_POSTS);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+	
+	@Test
+	public void getPostsOfUser_whenUserHasPostsWithAttachments_runsUserLookupTagQueryAndSingleQuery() throws IOException {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		for(int i = 0; i < 5; i++) {
+			createPostWithAttachment(user);
+		}
+		
+		countingQueries("/api/1.0/users/user1/posts");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+	
+	@Test
+	public void getOldPosts_whenPostsHaveDifferentUsersAndAttachments_runsSingleQuery() throws IOException {
+		Post newest = createPostsOfDifferentUsers(5);
+		
+		countingQueries(API_1_0_POSTS + "/" + newest.getId() + "?direction=before&page=0&size=5&sort=id,desc");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void getFeed_whenPostsHaveDifferentUsersAndAttachments_runsSingleQuery() throws IOException {
+		createPostsOfDifferentUsers(5);
+		
+		countingQueries(API_1_0_POSTS + "/feed?size=10");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+	
+	@Test
+	public void getNewPostCount_whenIdInsideRecentWindow_runsNoQuery() throws IOException {
+		Post newest = createPostsOfDifferentUsers(5);
+		
+		countingQueries(API_1_0_POSTS + "/" + (newest.getId() - 1) + "?direction=after&count=true");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+	}
+	
+	@Test
+	public void getPosts_whenPostsHaveDifferentUsersAndAttachments_loadsNoEntities() throws IOException {
+		createPostsOfDifferentUsers(5);
+		
+		countingQueries(API_1_0_POSTS);
+		assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+	}
+	
+	@Test
+	public void getPosts_whenPostHasAttachment_returnsProjectedUserAndAttachment() throws IOException {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		Post post = createPostWithAttachment(user);
+		
+		ResponseEntity<TestPage<PostVM>> response = testRestTemplate.exchange(API_1_0_POSTS, HttpMethod.GET, null,
+				new ParameterizedTypeReference<TestPage<PostVM>>() {});
+		PostVM postVM = response.getBody().getContent().get(0);
+		assertThat(postVM.getUser().getUsername()).isEqualTo("user1");
+		assertThat(postVM.getUser().getDisplayName()).isEqualTo("test-display");
+		assertThat(postVM.getAttachment().getName()).isEqualTo(post.getAttachment().getName());
+	}
+	
+	@Test
+	public void getUsers_whenPageIsFull_runsPageAndCountQueriesWithoutLoadingEntities() {
+		for(int i = 1; i <= 3; i++) {
+			userService.save(TestUtil.createValidUser("user" + i));
+		}
+		
+		countingQueries("/api/1.0/users?page=0&size=2");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+	}
+	
+	private ResponseEntity<Object> countingQueries(String path) {
+		statistics.clear();
+		return testRestTemplate.getForEntity(path, Object.class);
+	}
+	
+	private Post createPostsOfDifferentUsers(int count) throws IOException {
+		Post last = null;
+		for(int i = 1; i <= count; i++) {
+			User user = userService.save(TestUtil.createValidUser("user" + i));
+			last = createPostWithAttachment(user);
+		}
+		return last;
+	}
+	
+	private Post createPostWithAttachment(User user) throws IOException {
+		ClassPathResource imageResource = new ClassPathResource("profile.png");
+		byte[] fileAsByte = FileUtils.readFileToByteArray(imageResource.getFile());
+		FileAttachment attachment = fileService.saveAttachment(new MockMultipartFile("profile.png", fileAsByte));
+		Post post = TestUtil.createValidPost();
+		post.setAttachment(attachment);
+		return postService.save(user, post);
+	}
+	
+	@AfterEach
+	public void cleanupAfter() {
+		fileAttachmentRepository.deleteAll();
+		postRepository.deleteAll();
+	}
+
+}
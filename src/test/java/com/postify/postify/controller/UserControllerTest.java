@@ -23,13 +23,18 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 
 import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
 import com.postify.postify.exception.ApiError;
 import com.postify.postify.model.GenericResponse;
 import com.postify.postify.entity.User;
@@ -37,6 +42,7 @@ import com.postify.postify.repository.UserRepository;
 import com.postify.postify.service.UserService;
 import com.postify.postify.model.UserUpdateVM;
 import com.postify.postify.model.UserVM;
+import com.postify.postify.service.UserIdCache;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -50,6 +56,9 @@ public class UserControllerTest {
 	@Autowired
 	UserRepository userRepository;
 	
+	@Autowired
+	UserIdCache userIdCache;
+	
 	@Autowired
 	UserService userService;
 	
@@ -59,6 +68,7 @@ public class UserControllerTest {
 	@BeforeEach
 	public void cleanup() {
 		userRepository.deleteAll();
+		userIdCache.clear();
 		testRestTemplate.getRestTemplate().getInterceptors().clear();
 	}
 
@@ -350,6 +360,26 @@ public class UserControllerTest {
 		ResponseEntity<String> response = getUser(username, String.class);
 		assertThat(response.getBody().contains("password")).isFalse();
 	}
+	
+	@Test
+	public void getUserByUsername_whenETagMatches_receiveNotModified() {
+		String username = "test-user";
+		userService.save(TestUtil.createValidUser(username));
+		String eTag = getUser(username, Object.class).getHeaders().getETag();
+		ResponseEntity<Object> response = getUserIfNoneMatch(username, eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+	
+	@Test
+	public void getUserByUsername_whenUserUpdatedAfterETag_receiveOk() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		String eTag = getUser("user1", Object.class).getHeaders().getETag();
+		UserUpdateVM updatedUser = createValidUserUpdateVM();
+		userService.update(user.getId(), updatedUser);
+		ResponseEntity<Object> response = getUserIfNoneMatch("user1", eTag);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+	
 	@Test
 	public void getUserByUsername_whenUserDoesNotExist_receiveNotFound() {
 		ResponseEntity<Object> response = getUser("unknown-user", Object.class);
@@ -456,7 +486,7 @@ public class UserControllerTest {
 		
 		String storedImageName = response.getBody().getImage();
 		
-		String profilePicturePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
+		String profilePicturePath = StorageLayout.shardedPath(appConfiguration.getFullProfileImagesPath(), storedImageName).toString();
 		
 		File storedImage = new File(profilePicturePath);
 		assertThat(storedImage.exists()).isTrue();
@@ -542,6 +572,51 @@ public class UserControllerTest {
 		assertThat(validationErrors.get("image")).isEqualTo("Only PNG and JPG files are allowed");
 	}
 	
+	@Test
+	public void putUserImage_withPNGImageFromAuthorizedUser_imageIsStoredUnderProfileFolder() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		authenticate(user.getUsername());
+		ResponseEntity<UserVM> response = putUserImage(user.getId(), getImageRequestEntity("profile.png"), UserVM.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		
+		File storedImage = StorageLayout.shardedPath(appConfiguration.getFullProfileImagesPath(), response.getBody().getImage()).toFile();
+		assertThat(storedImage.exists()).isTrue();
+	}
+	
+	@Test
+	public void putUserImage_whenPreviousImageHadVariants_receiveUserVMWithoutStaleVariants() {
+		User inDB = TestUtil.createValidUser("user1");
+		inDB.setImage("old-image");
+		inDB.setImageThumbnail(StorageLayout.variantName("old-image", StorageLayout.THUMBNAIL));
+		User user = userService.save(inDB);
+		authenticate(user.getUsername());
+		ResponseEntity<UserVM> response = putUserImage(user.getId(), getImageRequestEntity("profile.png"), UserVM.class);
+		assertThat(response.getBody().getImageThumbnail()).isNull();
+	}
+	
+	@Test
+	public void putUserImage_withGIFImageFromAuthorizedUser_receiveBadRequest() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		authenticate(user.getUsername());
+		ResponseEntity<Object> response = putUserImage(user.getId(), getImageRequestEntity("test-gif.gif"), Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+	
+	@Test
+	public void putUserImage_withGIFImageFromAuthorizedUser_imageIsNotStored() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		authenticate(user.getUsername());
+		putUserImage(user.getId(), getImageRequestEntity("test-gif.gif"), Object.class);
+		assertThat(FileUtils.listFiles(new File(appConfiguration.getFullProfileImagesPath()), null, true)).isEmpty();
+	}
+	
+	@Test
+	public void putUserImage_withPNGImageFromUnauthorizedUser_receiveUnauthorized() {
+		User user = userService.save(TestUtil.createValidUser("user1"));
+		ResponseEntity<Object> response = putUserImage(user.getId(), getImageRequestEntity("profile.png"), Object.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+	}
+	
 	@Test
 	public void putUser_withValidRequestBodyWithJPGImageForUserWhoHasImage_removesOldImageFromStorage() throws IOException {
 		User user = userService.save(TestUtil.createValidUser("user1"));
@@ -556,7 +631,7 @@ public class UserControllerTest {
 		putUser(user.getId(), requestEntity, UserVM.class);
 		
 		String storedImageName = response.getBody().getImage();
-		String profilePicturePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
+		String profilePicturePath = StorageLayout.shardedPath(appConfiguration.getFullProfileImagesPath(), storedImageName).toString();
 		File storedImage = new File(profilePicturePath);
 		assertThat(storedImage.exists()).isFalse();
 	}
@@ -597,11 +672,31 @@ public class UserControllerTest {
 		return testRestTemplate.getForEntity(path, responseType);
 	}
 	
+	public ResponseEntity<Object> getUserIfNoneMatch(String username, String eTag){
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(eTag);
+		return testRestTemplate.exchange(API_1_0_USERS + "/" + username, HttpMethod.GET, new HttpEntity<>(headers), Object.class);
+	}
+	
 	public <T> ResponseEntity<T> putUser(long id, HttpEntity<?> requestEntity, Class<T> responseType){
 		String path = API_1_0_USERS + "/" + id;
 		return testRestTemplate.exchange(path, HttpMethod.PUT, requestEntity, responseType);
 	}
 	
+	public <T> ResponseEntity<T> putUserImage(long id, HttpEntity<?> requestEntity, Class<T> responseType){
+		String path = API_1_0_USERS + "/" + id + "/image";
+		return testRestTemplate.exchange(path, HttpMethod.PUT, requestEntity, responseType);
+	}
+	
+	private HttpEntity<MultiValueMap<String, Object>> getImageRequestEntity(String fileName) {
+		MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+		body.add("image", new ClassPathResource(fileName));
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+		return new HttpEntity<>(body, headers);
+	}
+	
 	@AfterEach
 	public void cleanDirectory() throws IOException {
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
@@ -2,6 +2,7 @@ package com.postify.postify.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import com.postify.postify.entity.Post;
@@ -69,6 +71,28 @@ public class FileAttachmentRepositoryTest {
 		List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndPostIsNull(oneHourAgo);
 		assertThat(attachments.size()).isEqualTo(1);
 	}
+
+	@Test
+	public void findOrphansAfter_whenSomeAttachmentsOldSomeNewAndSomeWithPost_returnsOldOrphansOnly() {
+		Post post1 = testEntityManager.persist(TestUtil.createValidPost());
+		testEntityManager.persist(getOldFileAttachmentWithPost(post1));
+		FileAttachment orphan = testEntityManager.persist(getOneHourOldFileAttachment());
+		testEntityManager.persist(getFileAttachmentWithinOneHour());
+		Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
+		List<Object[]> orphans = fileAttachmentRepository.findOrphansAfter(oneHourAgo, Long.MIN_VALUE, 1, 0, PageRequest.of(0, 10));
+		assertThat(orphans.size()).isEqualTo(1);
+		assertThat(orphans.get(0)[0]).isEqualTo(orphan.getId());
+	}
+
+	@Test
+	public void deleteOrphansByIdIn_whenOneAttachmentHasPost_deletesOnlyTheOrphan() {
+		Post post1 = testEntityManager.persist(TestUtil.createValidPost());
+		FileAttachment attached = testEntityManager.persist(getOldFileAttachmentWithPost(post1));
+		FileAttachment orphan = testEntityManager.persist(getOneHourOldFileAttachment());
+		int deleted = fileAttachmentRepository.deleteOrphansByIdIn(Arrays.asList(attached.getId(), orphan.getId()));
+		assertThat(deleted).isEqualTo(1);
+	}
+	
 	private FileAttachment getOneHourOldFileAttachment() {
 		Date date = new Date(System.currentTimeMillis() - (60*60*1000) - 1);
 		FileAttachment fileAttachment = new FileAttachment();
@@ -0,0 +1,73 @@
+package com.postify.postify.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import com.postify.postify.entity.JobLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class JobLockRepositoryTest {
+
+	private static final String JOB = "attachment-cleanup#0";
+
+	@Autowired
+	TestEntityManager testEntityManager;
+
+	@Autowired
+	JobLockRepository jobLockRepository;
+
+	@BeforeEach
+	public void init() {
+		testEntityManager.persistAndFlush(new JobLock(JOB));
+	}
+
+	@Test
+	public void acquire_whenLockIsFree_returnsOneAndIssuesFencingToken() {
+		assertThat(jobLockRepository.acquire(JOB, "node-1", 1000, 2000)).isEqualTo(1);
+		assertThat(jobLockRepository.findFencingToken(JOB, "node-1")).isEqualTo(1);
+	}
+
+	@Test
+	public void acquire_whenLockIsHeldByAnotherNode_returnsZero() {
+		jobLockRepository.acquire(JOB, "node-1", 1000, 2000);
+		assertThat(jobLockRepository.acquire(JOB, "node-2", 1500, 2500)).isZero();
+		assertThat(jobLockRepository.findFencingToken(JOB, "node-2")).isNull();
+	}
+
+	@Test
+	public void acquire_whenLeaseExpired_incrementsFencingToken() {
+		jobLockRepository.acquire(JOB, "node-1", 1000, 2000);
+		assertThat(jobLockRepository.acquire(JOB, "node-2", 2000, 3000)).isEqualTo(1);
+		assertThat(jobLockRepository.findFencingToken(JOB, "node-2")).isEqualTo(2);
+	}
+
+	@Test
+	public void isHeld_afterLeaseTakenOver_returnsFalseForStaleToken() {
+		jobLockRepository.acquire(JOB, "node-1", 1000, 2000);
+		jobLockRepository.acquire(JOB, "node-2", 2000, 3000);
+		assertThat(jobLockRepository.isHeld(JOB, "node-1", 1, 2500)).isFalse();
+		assertThat(jobLockRepository.isHeld(JOB, "node-2", 2, 2500)).isTrue();
+	}
+
+	@Test
+	public void release_withStaleToken_doesNotShortenCurrentLease() {
+		jobLockRepository.acquire(JOB, "node-1", 1000, 2000);
+		jobLockRepository.acquire(JOB, "node-2", 2000, 3000);
+		assertThat(jobLockRepository.release(JOB, "node-1", 1, 2000)).isZero();
+		assertThat(jobLockRepository.isHeld(JOB, "node-2", 2, 2500)).isTrue();
+	}
+
+	@Test
+	public void findDatabaseTime_whenLockRowExists_returnsCurrentTime() {
+		assertThat(jobLockRepository.findDatabaseTime(JOB)).isCloseTo(new Date(), 60 * 1000);
+	}
+
+}
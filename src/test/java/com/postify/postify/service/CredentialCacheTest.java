@@ -0,0 +1,55 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.AuthUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CredentialCacheTest {
+	
+	CredentialCache credentialCache;
+	
+	@BeforeEach
+	public void init() {
+		credentialCache = new CredentialCache(new AppConfiguration(), new SimpleMeterRegistry());
+	}
+	
+	@Test
+	public void keyFor_whenPasswordsDiffer_returnsDifferentKeys() {
+		String key = credentialCache.keyFor("user1", "P4ssword");
+		String otherKey = credentialCache.keyFor("user1", "P4ssword2");
+		assertThat(key).isNotEqualTo(otherKey);
+		assertThat(key).doesNotContain("P4ssword");
+	}
+	
+	@Test
+	public void get_whenCredentialsCached_returnsUser() {
+		AuthUser user = new AuthUser(1, "user1", "display1", null, null);
+		String key = credentialCache.keyFor("user1", "P4ssword");
+		credentialCache.put(key, user, credentialCache.generation());
+		assertThat(credentialCache.get(key)).isSameAs(user);
+	}
+	
+	@Test
+	public void invalidate_whenUserIsCached_removesUser() {
+		AuthUser user = new AuthUser(1, "user1", "display1", null, null);
+		String key = credentialCache.keyFor("user1", "P4ssword");
+		credentialCache.put(key, user, credentialCache.generation());
+		credentialCache.invalidate("user1");
+		assertThat(credentialCache.get(key)).isNull();
+	}
+	
+	@Test
+	public void put_whenInvalidatedDuringAuthentication_doesNotCacheUser() {
+		AuthUser user = new AuthUser(1, "user1", "display1", null, null);
+		String key = credentialCache.keyFor("user1", "P4ssword");
+		long generation = credentialCache.generation();
+		credentialCache.invalidate("user1");
+		credentialCache.put(key, user, generation);
+		assertThat(credentialCache.get(key)).isNull();
+	}
+
+}
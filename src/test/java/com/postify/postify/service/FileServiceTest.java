@@ -1,13 +1,19 @@
 package com.postify.postify.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
+import com.postify.postify.entity.AttachmentLease;
 import com.postify.postify.entity.FileAttachment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,11 +21,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
+import com.postify.postify.repository.AttachmentLeaseRepository;
 import com.postify.postify.repository.FileAttachmentRepository;
 import com.postify.postify.service.FileService;
 
@@ -34,12 +47,18 @@ public class FileServiceTest {
 	@MockBean
 	FileAttachmentRepository fileAttachmentRepository;
 	
+	@MockBean
+	AttachmentLeaseRepository attachmentLeaseRepository;
+	
 	@BeforeEach
 	public void init() {
 		appConfiguration = new AppConfiguration();
 		appConfiguration.setUploadPath("uploads-test");
 		
-		fileService = new FileService(appConfiguration, fileAttachmentRepository);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		fileService = new FileService(appConfiguration, fileAttachmentRepository, attachmentLeaseRepository,
+				Mockito.mock(PlatformTransactionManager.class), new ImageCache(appConfiguration, meterRegistry),
+				Mockito.mock(ApplicationEventPublisher.class), meterRegistry);
 		
 		new File(appConfiguration.getUploadPath()).mkdir();
 		new File(appConfiguration.getFullProfileImagesPath()).mkdir();
@@ -62,12 +81,8 @@ public class FileServiceTest {
 		File target = new File(filePath);
 		FileUtils.copyFile(source, target);
 		
-		FileAttachment fileAttachment = new FileAttachment();
-		fileAttachment.setId(5);
-		fileAttachment.setName(fileName);
-		
-		Mockito.when(fileAttachmentRepository.findByDateBeforeAndPostIsNull(Mockito.any(Date.class)))
-		.thenReturn(Arrays.asList(fileAttachment));
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Collections.singletonList(new Object[] {5L, fileName}));
 		
 		fileService.cleanupStorage();
 		File storedImage = new File(filePath);
@@ -82,20 +97,116 @@ public class FileServiceTest {
 		File target = new File(filePath);
 		FileUtils.copyFile(source, target);
 		
-		FileAttachment fileAttachment = new FileAttachment();
-		fileAttachment.setId(5);
-		fileAttachment.setName(fileName);
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Collections.singletonList(new Object[] {5L, fileName}));
+		
+		fileService.cleanupStorage();
+		Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(5L));
+	}
+
+	@Test
+	public void cleanupStorage_whenMoreOrphansThanBatchSize_deletesThemPageByPage() {
+		appConfiguration.setAttachmentCleanupBatchSize(2);
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.eq(Long.MIN_VALUE), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Arrays.asList(new Object[] {1L, "file-1"}, new Object[] {2L, "file-2"}));
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.eq(2L), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Collections.singletonList(new Object[] {3L, "file-3"}));
+		
+		fileService.cleanupStorage();
+		Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(1L, 2L));
+		Mockito.verify(fileAttachmentRepository).deleteOrphansByIdIn(Arrays.asList(3L));
+	}
+
+	@Test
+	public void cleanupStorage_whenMaxPerRunReached_stopsDeleting() {
+		appConfiguration.setAttachmentCleanupBatchSize(2);
+		appConfiguration.setAttachmentCleanupMaxPerRun(2);
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Arrays.asList(new Object[] {1L, "file-1"}, new Object[] {2L, "file-2"}));
 		
-		Mockito.when(fileAttachmentRepository.findByDateBeforeAndPostIsNull(Mockito.any(Date.class)))
-		.thenReturn(Arrays.asList(fileAttachment));
+		fileService.cleanupStorage();
+		Mockito.verify(fileAttachmentRepository, Mockito.times(1)).deleteOrphansByIdIn(Mockito.anyCollection());
+	}
+
+	@Test
+	public void cleanupStorage_whenLeaseConfigured_onlyQueriesOrphansOlderThanLease() {
+		appConfiguration.setAttachmentLease(Duration.ofHours(3));
+		long before = System.currentTimeMillis();
 		
 		fileService.cleanupStorage();
-		Mockito.verify(fileAttachmentRepository).deleteById(5L);
+		long after = System.currentTimeMillis();
+		Mockito.verify(fileAttachmentRepository).findOrphansAfter(Mockito.argThat(cutoff ->
+				cutoff.getTime() >= before - Duration.ofHours(3).toMillis() && cutoff.getTime() <= after - Duration.ofHours(3).toMillis()),
+				Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class));
+	}
+
+	@Test
+	public void cleanupStorage_whenFileStillReferenced_keepsFileInStorage() throws IOException {
+		String fileName = "random-file";
+		String filePath = appConfiguration.getFullAttachmentsPath() + "/" + fileName;
+		File source = new ClassPathResource("profile.png").getFile();
+		File target = new File(filePath);
+		FileUtils.copyFile(source, target);
+		
+		Mockito.when(fileAttachmentRepository.findOrphansAfter(Mockito.any(Date.class), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+		.thenReturn(Collections.singletonList(new Object[] {5L, fileName}));
+		Mockito.when(fileAttachmentRepository.countByName(fileName)).thenReturn(1L);
+		
+		fileService.cleanupStorage();
+		assertThat(new File(filePath).exists()).isTrue();
+	}
+
+	@Test
+	public void saveAttachment_whenSameContentUploadedTwice_storesSingleFile() throws IOException {
+		byte[] content = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+		Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class)))
+		.thenAnswer(invocation -> invocation.getArgument(0));
+		
+		FileAttachment first = fileService.saveAttachment(new MockMultipartFile("file", "a.png", "image/png", content));
+		FileAttachment second = fileService.saveAttachment(new MockMultipartFile("file", "b.png", "image/png", content));
+		
+		assertThat(second.getName()).isEqualTo(first.getName());
+		assertThat(FileUtils.listFiles(new File(appConfiguration.getFullAttachmentsPath()), null, true))
+			.containsExactly(StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), first.getName()).toFile());
+	}
+
+	@Test
+	public void saveAttachment_whenStored_savesLeaseOwnedByThisNode() throws IOException {
+		appConfiguration.setNodeId(3);
+		Mockito.when(fileAttachmentRepository.save(Mockito.any(FileAttachment.class)))
+		.thenAnswer(invocation -> invocation.getArgument(0));
+		
+		FileAttachment saved = fileService.saveAttachment(new MockMultipartFile("file", "a.png", "image/png",
+				FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile())));
+		
+		Mockito.verify(attachmentLeaseRepository).save(new AttachmentLease(saved.getId(), saved.getName(),
+				saved.getDate().getTime() + appConfiguration.getAttachmentLease().toMillis(), 3));
+	}
+
+	@Test
+	public void saveAttachment_whenUploadCannotBeRead_throwsWithoutSavingRow() throws IOException {
+		MultipartFile file = Mockito.mock(MultipartFile.class);
+		Mockito.when(file.getInputStream()).thenThrow(new IOException("connection reset"));
+		
+		assertThatThrownBy(() -> fileService.saveAttachment(file)).isInstanceOf(UncheckedIOException.class);
+		Mockito.verify(fileAttachmentRepository, Mockito.never()).save(Mockito.any(FileAttachment.class));
+	}
+
+	@Test
+	public void releaseAttachmentImage_whenReferencedDuringRelease_keepsFile() throws IOException {
+		String fileName = "random-file";
+		File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+		FileUtils.copyFile(new ClassPathResource("profile.png").getFile(), target);
+		Mockito.when(fileAttachmentRepository.countByName(fileName)).thenReturn(0L, 1L);
+		
+		assertThat(fileService.releaseAttachmentImage(fileName)).isFalse();
+		assertThat(target.exists()).isTrue();
 	}
 
 	
 	@AfterEach
 	public void cleanup() throws IOException {
+		fileService.shutdown();
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
 		
@@ -0,0 +1,115 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.postify.postify.configuration.AppConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ImageCacheTest {
+
+	private static final int IMAGE_SIZE = 64 * 1024;
+
+	ImageCache imageCache;
+
+	@BeforeEach
+	public void init() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setImageCacheSize(DataSize.ofMegabytes(1));
+		appConfiguration.setImageCacheMaxEntrySize(DataSize.ofKilobytes(64));
+		imageCache = new ImageCache(appConfiguration, new SimpleMeterRegistry());
+	}
+
+	@Test
+	public void get_afterPut_returnsCachedContent() {
+		Path path = Paths.get("image-1");
+		imageCache.put(path, image(IMAGE_SIZE, (byte) 7), 1);
+
+		ByteBuffer cached = imageCache.get(path, IMAGE_SIZE, 1);
+
+		assertThat(cached.remaining()).isEqualTo(IMAGE_SIZE);
+		assertThat(cached.get(0)).isEqualTo((byte) 7);
+		assertThat(imageCache.getHitRatio()).isEqualTo(1.0);
+	}
+
+	@Test
+	public void get_whenFileWasModified_returnsNull() {
+		Path path = Paths.get("image-1");
+		imageCache.put(path, image(IMAGE_SIZE, (byte) 7), 1);
+
+		assertThat(imageCache.get(path, IMAGE_SIZE, 2)).isNull();
+		assertThat(imageCache.getResidentBytes()).isZero();
+	}
+
+	@Test
+	public void invalidate_whenImageIsCached_releasesResidentBytes() {
+		Path path = Paths.get("image-1");
+		imageCache.put(path, image(IMAGE_SIZE, (byte) 7), 1);
+		assertThat(imageCache.getResidentBytes()).isEqualTo(IMAGE_SIZE);
+
+		imageCache.invalidate(path);
+
+		assertThat(imageCache.getResidentBytes()).isZero();
+		assertThat(imageCache.get(path, IMAGE_SIZE, 1)).isNull();
+	}
+
+	@Test
+	public void put_whenImageIsLargerThanMaxEntrySize_doesNotCacheIt() {
+		Path path = Paths.get("image-1");
+		imageCache.put(path, image(IMAGE_SIZE + 1, (byte) 7), 1);
+
+		assertThat(imageCache.getResidentBytes()).isZero();
+	}
+
+	@Test
+	public void put_whenOneOffImagesAreScanned_keepsFrequentlyUsedImages() {
+		for(int i = 0; i < 10; i++) {
+			Path hot = Paths.get("hot-" + i);
+			imageCache.get(hot, IMAGE_SIZE, 1);
+			imageCache.put(hot, image(IMAGE_SIZE, (byte) i), 1);
+		}
+		for(int round = 0; round < 5; round++) {
+			for(int i = 0; i < 10; i++) {
+				imageCache.get(Paths.get("hot-" + i), IMAGE_SIZE, 1);
+			}
+		}
+		for(int i = 0; i < 50; i++) {
+			Path cold = Paths.get("cold-" + i);
+			imageCache.get(cold, IMAGE_SIZE, 1);
+			imageCache.put(cold, image(IMAGE_SIZE, (byte) i), 1);
+		}
+
+		for(int i = 0; i < 10; i++) {
+			assertThat(imageCache.get(Paths.get("hot-" + i), IMAGE_SIZE, 1)).isNotNull();
+		}
+		assertThat(imageCache.getResidentBytes()).isLessThanOrEqualTo(DataSize.ofMegabytes(1).toBytes());
+	}
+
+	@Test
+	public void put_whenImageAdmittedFromWindow_movesItToDirectMemory() {
+		Path first = Paths.get("image-1");
+		Path second = Paths.get("image-2");
+		imageCache.put(first, image(IMAGE_SIZE, (byte) 1), 1);
+		imageCache.put(second, image(IMAGE_SIZE, (byte) 2), 1);
+
+		assertThat(imageCache.get(first, IMAGE_SIZE, 1).isDirect()).isTrue();
+		assertThat(imageCache.get(second, IMAGE_SIZE, 1).isDirect()).isFalse();
+	}
+
+	private ByteBuffer image(int size, byte value) {
+		ByteBuffer content = ByteBuffer.allocate(size);
+		while(content.hasRemaining()) {
+			content.put(value);
+		}
+		content.flip();
+		return content;
+	}
+
+}
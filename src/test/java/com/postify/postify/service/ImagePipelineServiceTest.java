@@ -0,0 +1,226 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.imageio.ImageIO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.ImageJob;
+import com.postify.postify.event.ImageVariantsEvent;
+import com.postify.postify.repository.AttachmentLeaseRepository;
+import com.postify.postify.repository.FileAttachmentRepository;
+import com.postify.postify.repository.ImageJobRepository;
+import com.postify.postify.repository.JobLockRepository;
+import com.postify.postify.repository.UserRepository;
+import com.postify.postify.util.StorageLayout;
+
+public class ImagePipelineServiceTest {
+
+	private static final long DATABASE_TIME = 1_000_000L;
+
+	ImagePipelineService imagePipelineService;
+
+	AppConfiguration appConfiguration;
+
+	ImageJobRepository imageJobRepository;
+
+	UserRepository userRepository;
+
+	FileAttachmentRepository fileAttachmentRepository;
+
+	ApplicationEventPublisher eventPublisher;
+
+	@BeforeEach
+	public void init() {
+		appConfiguration = new AppConfiguration();
+		appConfiguration.setUploadPath("uploads-test");
+
+		imageJobRepository = Mockito.mock(ImageJobRepository.class);
+		userRepository = Mockito.mock(UserRepository.class);
+		fileAttachmentRepository = Mockito.mock(FileAttachmentRepository.class);
+		eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		FileService fileService = new FileService(appConfiguration, fileAttachmentRepository,
+				Mockito.mock(AttachmentLeaseRepository.class), Mockito.mock(PlatformTransactionManager.class),
+				new ImageCache(appConfiguration, meterRegistry), eventPublisher, meterRegistry);
+		JobLockRepository jobLockRepository = Mockito.mock(JobLockRepository.class);
+		Mockito.when(jobLockRepository.findDatabaseTime(Mockito.anyString())).thenReturn(new Date(DATABASE_TIME));
+		imagePipelineService = new ImagePipelineService(appConfiguration, imageJobRepository,
+				userRepository, fileAttachmentRepository, fileService, new JobLockService(jobLockRepository, appConfiguration),
+				eventPublisher, meterRegistry);
+
+		new File(appConfiguration.getUploadPath()).mkdir();
+		new File(appConfiguration.getFullProfileImagesPath()).mkdir();
+		new File(appConfiguration.getFullAttachmentsPath()).mkdir();
+	}
+
+	@Test
+	public void process_whenProfileImageStored_writesThumbnailWithinConfiguredSize() throws IOException {
+		storeImage(appConfiguration.getFullProfileImagesPath(), "profile-image");
+		Mockito.when(userRepository.updateImageVariants(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1);
+
+		imagePipelineService.process(new ImageJob(ImageJob.PROFILE, "profile-image"));
+
+		File thumbnail = variantFile(appConfiguration.getFullProfileImagesPath(), "profile-image", StorageLayout.THUMBNAIL);
+		BufferedImage image = ImageIO.read(thumbnail);
+		assertThat(Math.max(image.getWidth(), image.getHeight())).isEqualTo(appConfiguration.getImageThumbnailSize());
+	}
+
+	@Test
+	public void process_whenImageSmallerThanMediumSize_keepsOriginalDimensions() throws IOException {
+		storeImage(appConfiguration.getFullProfileImagesPath(), "profile-image");
+		Mockito.when(userRepository.updateImageVariants(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1);
+
+		imagePipelineService.process(new ImageJob(ImageJob.PROFILE, "profile-image"));
+
+		File medium = variantFile(appConfiguration.getFullProfileImagesPath(), "profile-image", StorageLayout.MEDIUM);
+		assertThat(ImageIO.read(medium).getWidth()).isEqualTo(600);
+	}
+
+	@Test
+	public void process_whenProfileImageStored_publishesVariantsEvent() throws IOException {
+		storeImage(appConfiguration.getFullProfileImagesPath(), "profile-image");
+		Mockito.when(userRepository.updateImageVariants(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(1);
+
+		boolean done = imagePipelineService.process(new ImageJob(ImageJob.PROFILE, "profile-image"));
+
+		assertThat(done).isTrue();
+		Mockito.verify(eventPublisher).publishEvent(new ImageVariantsEvent(ImageJob.PROFILE, "profile-image"));
+	}
+
+	@Test
+	public void process_whenImageNoLongerOnUser_completesAndDropsVariants() throws IOException {
+		storeImage(appConfiguration.getFullProfileImagesPath(), "profile-image");
+		Mockito.when(userRepository.updateImageVariants(Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(0);
+
+		boolean done = imagePipelineService.process(new ImageJob(ImageJob.PROFILE, "profile-image"));
+
+		assertThat(done).isTrue();
+		assertThat(variantFile(appConfiguration.getFullProfileImagesPath(), "profile-image", StorageLayout.THUMBNAIL).exists()).isFalse();
+		Mockito.verify(eventPublisher, Mockito.never()).publishEvent(Mockito.any(Object.class));
+	}
+
+	@Test
+	public void process_whenAttachmentImageStored_recordsVariantNames() throws IOException {
+		storeImage(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment");
+
+		imagePipelineService.process(new ImageJob(ImageJob.ATTACHMENT, "abcdef-attachment"));
+
+		Mockito.verify(fileAttachmentRepository).updateVariants("abcdef-attachment",
+				StorageLayout.variantName("abcdef-attachment", StorageLayout.THUMBNAIL),
+				StorageLayout.variantName("abcdef-attachment", StorageLayout.MEDIUM));
+	}
+
+	@Test
+	public void process_whenVariantsAlreadyWritten_recordsThemWithoutDecoding() throws IOException {
+		File source = StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment").toFile();
+		FileUtils.writeStringToFile(source, "not an image", "UTF-8");
+		for(String variant : StorageLayout.VARIANTS) {
+			FileUtils.writeStringToFile(variantFile(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment", variant), "variant", "UTF-8");
+		}
+
+		imagePipelineService.process(new ImageJob(ImageJob.ATTACHMENT, "abcdef-attachment"));
+
+		Mockito.verify(fileAttachmentRepository).updateVariants("abcdef-attachment",
+				StorageLayout.variantName("abcdef-attachment", StorageLayout.THUMBNAIL),
+				StorageLayout.variantName("abcdef-attachment", StorageLayout.MEDIUM));
+	}
+
+	@Test
+	public void process_whenSourceManyTimesMediumSize_writesMediumAtConfiguredSize() throws IOException {
+		File source = StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment").toFile();
+		source.getParentFile().mkdirs();
+		ImageIO.write(new BufferedImage(3000, 1500, BufferedImage.TYPE_INT_RGB), "png", source);
+
+		imagePipelineService.process(new ImageJob(ImageJob.ATTACHMENT, "abcdef-attachment"));
+
+		File medium = variantFile(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment", StorageLayout.MEDIUM);
+		assertThat(ImageIO.read(medium).getWidth()).isEqualTo(appConfiguration.getImageMediumSize());
+	}
+
+	@Test
+	public void process_whenSourceDeleted_completesWithoutVariants() throws IOException {
+		boolean done = imagePipelineService.process(new ImageJob(ImageJob.ATTACHMENT, "missing-attachment"));
+
+		assertThat(done).isTrue();
+		assertThat(variantFile(appConfiguration.getFullAttachmentsPath(), "missing-attachment", StorageLayout.THUMBNAIL).exists()).isFalse();
+	}
+
+	@Test
+	public void resubmitPending_whenJobClaimedByAnotherNode_leavesItAlone() {
+		ImageJob job = createPendingJob("abcdef-attachment");
+		Mockito.when(imageJobRepository.claim(Mockito.eq(job.getId()), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(0);
+
+		imagePipelineService.resubmitPending();
+
+		Mockito.verify(imageJobRepository, Mockito.after(200).never()).deleteIfExists(job.getId());
+		Mockito.verify(fileAttachmentRepository, Mockito.never()).updateVariants(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+	}
+
+	@Test
+	public void resubmitPending_whenJobLeaseExpired_claimsUsingDatabaseTime() {
+		ImageJob job = createPendingJob("abcdef-attachment");
+
+		imagePipelineService.resubmitPending();
+
+		Mockito.verify(imageJobRepository).findByLeasedUntilLessThanEqualAndIdGreaterThanOrderById(Mockito.eq(DATABASE_TIME),
+				Mockito.anyLong(), Mockito.any(Pageable.class));
+		Mockito.verify(imageJobRepository).claim(job.getId(), imagePipelineService.owner, DATABASE_TIME,
+				DATABASE_TIME + appConfiguration.getImageJobLease().toMillis());
+	}
+
+	@Test
+	public void resubmitPending_whenClaimedJobRowAlreadyGone_completesQuietly() throws IOException {
+		storeImage(appConfiguration.getFullAttachmentsPath(), "abcdef-attachment");
+		ImageJob job = createPendingJob("abcdef-attachment");
+		Mockito.when(imageJobRepository.claim(Mockito.eq(job.getId()), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(1);
+		Mockito.when(imageJobRepository.deleteIfExists(job.getId())).thenReturn(0);
+
+		imagePipelineService.resubmitPending();
+
+		Mockito.verify(imageJobRepository, Mockito.timeout(5000)).deleteIfExists(job.getId());
+		Mockito.verify(imageJobRepository, Mockito.never()).incrementAttempts(Mockito.anyLong(), Mockito.anyString());
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		imagePipelineService.shutdown();
+		FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
+		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+	}
+
+	private ImageJob createPendingJob(String name) {
+		ImageJob job = new ImageJob(ImageJob.ATTACHMENT, name);
+		job.setId(42);
+		Mockito.when(imageJobRepository.findByLeasedUntilLessThanEqualAndIdGreaterThanOrderById(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class)))
+			.thenReturn(Collections.singletonList(job));
+		return job;
+	}
+
+	private void storeImage(String folder, String name) throws IOException {
+		File source = new ClassPathResource("profile.png").getFile();
+		FileUtils.copyFile(source, StorageLayout.shardedPath(folder, name).toFile());
+	}
+
+	private File variantFile(String folder, String name, String variant) {
+		return StorageLayout.shardedPath(folder, StorageLayout.variantName(name, variant)).toFile();
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.JobLock;
+import com.postify.postify.repository.JobLockRepository;
+
+public class JobLockServiceTest {
+
+	private static final String JOB = "attachment-cleanup";
+
+	private static final long DATABASE_TIME = 1_000_000;
+
+	JobLockService jobLockService;
+
+	JobLockRepository jobLockRepository;
+
+	@BeforeEach
+	public void init() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setJobLockAtMost(Duration.ofMinutes(30));
+		appConfiguration.setJobLockAtLeast(Duration.ofMinutes(5));
+		jobLockRepository = Mockito.mock(JobLockRepository.class);
+		jobLockService = new JobLockService(jobLockRepository, appConfiguration);
+		Mockito.when(jobLockRepository.findDatabaseTime(Mockito.anyString())).thenReturn(new Date(DATABASE_TIME));
+		Mockito.when(jobLockRepository.acquire(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(1);
+		Mockito.when(jobLockRepository.findFencingToken(Mockito.anyString(), Mockito.anyString())).thenReturn(7L);
+	}
+
+	@Test
+	public void tryAcquire_whenRowMissing_createsRowAndLocksFromDatabaseTime() {
+		OptionalLong token = jobLockService.tryAcquire(JOB);
+
+		assertThat(token).hasValue(7);
+		Mockito.verify(jobLockRepository).save(new JobLock(JOB));
+		Mockito.verify(jobLockRepository).acquire(Mockito.eq(JOB), Mockito.anyString(),
+				Mockito.eq(DATABASE_TIME), Mockito.eq(DATABASE_TIME + Duration.ofMinutes(30).toMillis()));
+	}
+
+	@Test
+	public void tryAcquire_whenAnotherNodeCreatedRowFirst_stillAcquires() {
+		Mockito.when(jobLockRepository.save(Mockito.any(JobLock.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+		assertThat(jobLockService.tryAcquire(JOB)).hasValue(7);
+	}
+
+	@Test
+	public void tryAcquire_whenHeldElsewhere_returnsEmpty() {
+		Mockito.when(jobLockRepository.existsById(JOB)).thenReturn(true);
+		Mockito.when(jobLockRepository.acquire(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(0);
+
+		assertThat(jobLockService.tryAcquire(JOB)).isEmpty();
+		Mockito.verify(jobLockRepository, Mockito.never()).save(Mockito.any(JobLock.class));
+	}
+
+	@Test
+	public void release_beforeLockAtLeast_keepsLockUntilMinimumHold() {
+		jobLockService.release(JOB, 7, DATABASE_TIME - 1000);
+
+		Mockito.verify(jobLockRepository).release(Mockito.eq(JOB), Mockito.anyString(), Mockito.eq(7L),
+				Mockito.eq(DATABASE_TIME - 1000 + Duration.ofMinutes(5).toMillis()));
+	}
+
+	@Test
+	public void release_afterLockAtLeast_freesLockAtDatabaseTime() {
+		jobLockService.release(JOB, 7, DATABASE_TIME - Duration.ofMinutes(10).toMillis());
+
+		Mockito.verify(jobLockRepository).release(Mockito.eq(JOB), Mockito.anyString(), Mockito.eq(7L), Mockito.eq(DATABASE_TIME));
+	}
+
+	@Test
+	public void runExclusively_whenLeaseLost_reportsNotHeld() {
+		Mockito.when(jobLockRepository.isHeld(Mockito.eq(JOB), Mockito.anyString(), Mockito.eq(7L), Mockito.eq(DATABASE_TIME))).thenReturn(false);
+		List<Boolean> held = new ArrayList<>();
+
+		assertThat(jobLockService.runExclusively(JOB, leaseHeld -> held.add(leaseHeld.getAsBoolean()))).isTrue();
+		assertThat(held).containsExactly(false);
+	}
+
+	@Test
+	public void runPartitioned_runsOnlyPartitionsThisNodeAcquires() {
+		Mockito.when(jobLockRepository.acquire(Mockito.eq(JOB + "#1"), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(0);
+		List<Integer> partitions = new ArrayList<>();
+
+		int ran = jobLockService.runPartitioned(JOB, 3, (partition, leaseHeld) -> partitions.add(partition));
+
+		assertThat(ran).isEqualTo(2);
+		assertThat(partitions).containsExactlyInAnyOrder(0, 2);
+		Mockito.verify(jobLockRepository, Mockito.never()).release(Mockito.eq(JOB + "#1"), Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong());
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.configuration.PostVMSerializer;
+import com.postify.postify.model.FileAttachmentVM;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.model.UserVM;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PostJsonCacheTest {
+	
+	PostJsonCache postJsonCache;
+	
+	ObjectMapper cachingMapper;
+	
+	@BeforeEach
+	public void init() {
+		postJsonCache = new PostJsonCache(new AppConfiguration(), new SimpleMeterRegistry());
+		SimpleModule module = new SimpleModule();
+		module.addSerializer(PostVM.class, new PostVMSerializer(postJsonCache));
+		cachingMapper = new ObjectMapper().registerModule(module);
+	}
+	
+	@Test
+	public void getJson_whenPostHasAttachment_matchesJacksonOutput() throws IOException {
+		PostVM post = createPost(1, "display1");
+		post.setAttachment(new FileAttachmentVM("file.png", "image/png"));
+		assertThat(cachingMapper.writeValueAsString(post)).isEqualTo(new ObjectMapper().writeValueAsString(post));
+	}
+	
+	@Test
+	public void getJson_whenPostHasNoAttachmentAndEscapedContent_matchesJacksonOutput() throws IOException {
+		PostVM post = createPost(1, "display1");
+		post.setContent("\"quoted\" content with é and \n newline");
+		assertThat(cachingMapper.writeValueAsString(post)).isEqualTo(new ObjectMapper().writeValueAsString(post));
+	}
+	
+	@Test
+	public void getJson_whenCalledTwiceForSamePost_returnsCachedFragment() throws IOException {
+		assertThat(postJsonCache.getJson(createPost(1, "display1"))).isSameAs(postJsonCache.getJson(createPost(1, "display1")));
+	}
+	
+	@Test
+	public void getJson_whenAuthorDisplayNameChanged_returnsNewFragment() throws IOException {
+		postJsonCache.getJson(createPost(1, "display1"));
+		String json = postJsonCache.getJson(createPost(1, "display2")).getValue();
+		assertThat(json).contains("display2");
+	}
+	
+	@Test
+	public void getJson_whenOnlyMediumVariantsRecorded_returnsNewFragment() throws IOException {
+		PostVM post = createPost(1, "display1");
+		post.setAttachment(new FileAttachmentVM("file.png", "image/png"));
+		postJsonCache.getJson(post);
+		post.getUser().setImageMedium("profile-medium.png");
+		post.setAttachment(new FileAttachmentVM("file.png", "image/png", null, "file-medium.png"));
+		
+		String json = postJsonCache.getJson(post).getValue();
+		
+		assertThat(json).contains("profile-medium.png").contains("file-medium.png");
+	}
+	
+	private PostVM createPost(long id, String displayName) {
+		PostVM post = new PostVM();
+		post.setId(id);
+		post.setContent("test content for the test post");
+		post.setDate(1000);
+		post.setUser(new UserVM(5, "user1", displayName, "profile.png"));
+		return post;
+	}
+
+}
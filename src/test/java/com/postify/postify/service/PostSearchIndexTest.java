@@ -0,0 +1,111 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.repository.PostRepository;
+import com.postify.postify.util.SearchCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Pageable;
+
+public class PostSearchIndexTest {
+	
+	PostSearchIndex postSearchIndex;
+	
+	@BeforeEach
+	public void init() {
+		postSearchIndex = new PostSearchIndex(mock(PostRepository.class), new AppConfiguration());
+	}
+	
+	@Test
+	public void search_whenAllTermsMatch_returnsPost() {
+		postSearchIndex.add(1, "Spring Boot makes services easy");
+		postSearchIndex.add(2, "Spring is a season");
+		assertThat(ids(postSearchIndex.search("spring BOOT", SearchCursor.FIRST, 10))).containsExactly(1L);
+	}
+	
+	@Test
+	public void search_whenTermFrequencyDiffers_ranksHigherFrequencyFirst() {
+		postSearchIndex.add(1, "java java java");
+		postSearchIndex.add(2, "java once");
+		postSearchIndex.add(3, "java java");
+		assertThat(ids(postSearchIndex.search("java", SearchCursor.FIRST, 10))).containsExactly(1L, 3L, 2L);
+	}
+	
+	@Test
+	public void search_whenTermFrequencyIsEqual_ranksNewerFirst() {
+		postSearchIndex.add(1, "coffee");
+		postSearchIndex.add(2, "coffee");
+		assertThat(ids(postSearchIndex.search("coffee", SearchCursor.FIRST, 10))).containsExactly(2L, 1L);
+	}
+	
+	@Test
+	public void search_whenPostRemoved_doesNotReturnPost() {
+		postSearchIndex.add(1, "removed content");
+		postSearchIndex.remove(1, "removed content");
+		assertThat(ids(postSearchIndex.search("removed", SearchCursor.FIRST, 10))).isEmpty();
+	}
+	
+	@Test
+	public void search_whenFollowingCursor_returnsNextHits() {
+		postSearchIndex.add(1, "tea");
+		postSearchIndex.add(2, "tea");
+		postSearchIndex.add(3, "tea");
+		PostSearchIndex.SearchResult first = postSearchIndex.search("tea", SearchCursor.FIRST, 2);
+		assertThat(ids(postSearchIndex.search("tea", nextCursor(first), 2))).containsExactly(1L);
+	}
+	
+	@Test
+	public void search_whenFollowingCursor_staysWithinFirstPageCandidates() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setSearchCandidateLimit(2);
+		postSearchIndex = new PostSearchIndex(mock(PostRepository.class), appConfiguration);
+		postSearchIndex.add(1, "tea");
+		postSearchIndex.add(2, "tea");
+		postSearchIndex.add(3, "tea");
+		PostSearchIndex.SearchResult first = postSearchIndex.search("tea", SearchCursor.FIRST, 1);
+		postSearchIndex.add(4, "tea tea tea");
+		assertThat(ids(postSearchIndex.search("tea", nextCursor(first), 5))).containsExactly(2L);
+	}
+	
+	@Test
+	public void rebuild_whenPostDeletedWhileItsPageIsLoading_keepsPostOutOfIndex() {
+		PostRepository postRepository = mock(PostRepository.class);
+		postSearchIndex = new PostSearchIndex(postRepository, new AppConfiguration());
+		Mockito.when(postRepository.findContentAfter(Mockito.anyLong(), Mockito.any(Pageable.class))).thenAnswer(invocation -> {
+			postSearchIndex.remove(1, "deleted during rebuild");
+			return Collections.singletonList(new Object[] {1L, "deleted during rebuild"});
+		});
+		
+		postSearchIndex.rebuild();
+		
+		assertThat(ids(postSearchIndex.search("deleted", SearchCursor.FIRST, 10))).isEmpty();
+	}
+	
+	@Test
+	public void search_whenNotSingleNode_returnsNull() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setSingleNode(false);
+		postSearchIndex = new PostSearchIndex(mock(PostRepository.class), appConfiguration);
+		postSearchIndex.add(1, "tea");
+		assertThat(postSearchIndex.search("tea", SearchCursor.FIRST, 10)).isNull();
+	}
+	
+	private SearchCursor nextCursor(PostSearchIndex.SearchResult result) {
+		List<PostSearchIndex.Hit> hits = result.getHits();
+		PostSearchIndex.Hit last = hits.get(hits.size() - 1);
+		return SearchCursor.decode(SearchCursor.encode(last.getScore(), last.getId(), result.getWindowStart(), result.getWindowEnd()));
+	}
+	
+	private List<Long> ids(PostSearchIndex.SearchResult result) {
+		return result.getHits().stream().map(PostSearchIndex.Hit::getId).collect(Collectors.toList());
+	}
+
+}
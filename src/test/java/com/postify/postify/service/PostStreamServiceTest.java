@@ -0,0 +1,160 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.model.UserVM;
+
+public class PostStreamServiceTest {
+
+	PostStreamService postStreamService;
+
+	AppConfiguration appConfiguration;
+
+	List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+
+	CountDownLatch sendGate;
+
+	@BeforeEach
+	public void init() {
+		appConfiguration = new AppConfiguration();
+		appConfiguration.setStreamQueueCapacity(2);
+		appConfiguration.setStreamDispatchThreads(1);
+		appConfiguration.setStreamWriteTimeout(Duration.ofMillis(50));
+		postStreamService = new PostStreamService(appConfiguration, new SimpleMeterRegistry()) {
+			@Override
+			SseEmitter newEmitter() {
+				RecordingEmitter emitter = new RecordingEmitter(sendGate);
+				emitters.add(emitter);
+				return emitter;
+			}
+		};
+	}
+
+	@AfterEach
+	public void cleanup() {
+		if(sendGate != null) {
+			sendGate.countDown();
+		}
+		postStreamService.shutdown();
+	}
+
+	@Test
+	public void publish_whenSubscribedToAllAndAuthor_deliversToBothOnly() throws InterruptedException {
+		postStreamService.subscribe(null);
+		postStreamService.subscribe("user1");
+		postStreamService.subscribe("user2");
+
+		postStreamService.publish(createPost(10, "user1"));
+
+		waitUntil(() -> emitters.get(0).events.size() == 1 && emitters.get(1).events.size() == 1);
+		assertThat(emitters.get(2).events).isEmpty();
+	}
+
+	@Test
+	public void publish_whenQueueOverflows_evictsSubscriber() throws InterruptedException {
+		sendGate = new CountDownLatch(1);
+		postStreamService.subscribe(null);
+		postStreamService.publish(createPost(10, "user1"));
+		waitUntil(() -> emitters.get(0).sending);
+
+		for(long id = 11; id <= 13; id++) {
+			postStreamService.publish(createPost(id, "user1"));
+		}
+
+		assertThat(postStreamService.getSubscriberCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void heartbeat_whenSubscriberIdle_sendsHeartbeatComment() throws InterruptedException {
+		postStreamService.subscribe("user1");
+
+		postStreamService.heartbeat();
+
+		waitUntil(() -> emitters.get(0).events.size() == 1);
+		assertThat(emitters.get(0).events.get(0)).anyMatch(data -> data.getData().toString().contains("heartbeat"));
+	}
+
+	@Test
+	public void evictStalled_whenSendExceedsWriteTimeout_completesEmitterAndFreesDispatcher() throws InterruptedException {
+		sendGate = new CountDownLatch(1);
+		postStreamService.subscribe(null);
+		postStreamService.publish(createPost(10, "user1"));
+		waitUntil(() -> emitters.get(0).sending);
+		Thread.sleep(100);
+
+		postStreamService.evictStalled();
+
+		waitUntil(() -> emitters.get(0).completed);
+		assertThat(postStreamService.getSubscriberCount()).isEqualTo(0);
+		sendGate = null;
+		postStreamService.subscribe(null);
+		postStreamService.publish(createPost(11, "user1"));
+		waitUntil(() -> emitters.get(1).events.size() == 1);
+	}
+
+	private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private PostVM createPost(long id, String username) {
+		PostVM post = new PostVM();
+		post.setId(id);
+		post.setUser(new UserVM(1, username, username, null));
+		return post;
+	}
+
+	static class RecordingEmitter extends SseEmitter {
+
+		final List<Set<DataWithMediaType>> events = new CopyOnWriteArrayList<>();
+
+		final CountDownLatch gate;
+
+		volatile boolean sending;
+
+		volatile boolean completed;
+
+		RecordingEmitter(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			sending = true;
+			if(gate != null) {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					throw new IOException("Write interrupted", e);
+				}
+			}
+			events.add(builder.build());
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.repository.PostTagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PostTagServiceTest {
+	
+	PostTagService postTagService;
+	
+	@BeforeEach
+	public void init() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setTagTimelineSize(3);
+		postTagService = new PostTagService(mock(PostTagRepository.class), appConfiguration);
+	}
+	
+	@Test
+	public void extractTags_whenContentHasTagsAndMentions_returnsLowerCasedTags() {
+		assertThat(PostTagService.extractTags("Hello #Spring and @User1, #spring again"))
+			.containsExactly("#spring", "@user1");
+	}
+	
+	@Test
+	public void extractTags_whenContentHasEmailAddress_ignoresIt() {
+		assertThat(PostTagService.extractTags("mail me at someone@example.com")).isEmpty();
+	}
+	
+	@Test
+	public void findBefore_whenTimelineHasEnoughPosts_returnsNewestFirst() {
+		addPost(1, "#java");
+		addPost(2, "#java");
+		addPost(3, "#java");
+		assertThat(postTagService.findBefore("#java", Long.MAX_VALUE, 2)).containsExactly(3L, 2L);
+	}
+	
+	@Test
+	public void findBefore_whenTimelineHasTooFewPosts_returnsNull() {
+		addPost(1, "#java");
+		assertThat(postTagService.findBefore("#java", Long.MAX_VALUE, 2)).isNull();
+	}
+	
+	@Test
+	public void findAfter_whenOlderPostsWereEvicted_returnsNullBelowFloor() {
+		addPost(1, "#java");
+		addPost(2, "#java");
+		addPost(3, "#java");
+		addPost(4, "#java");
+		assertThat(postTagService.findAfter("#java", 1)).isNull();
+		assertThat(postTagService.findAfter("#java", 2)).containsExactly(3L, 4L);
+	}
+	
+	@Test
+	public void findBefore_whenNotSingleNode_returnsNull() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setTagTimelineSize(3);
+		appConfiguration.setSingleNode(false);
+		postTagService = new PostTagService(mock(PostTagRepository.class), appConfiguration);
+		addPost(1, "#java");
+		addPost(2, "#java");
+		assertThat(postTagService.findBefore("#java", Long.MAX_VALUE, 1)).isNull();
+		assertThat(postTagService.findAfter("#java", 0)).isNull();
+	}
+	
+	private void addPost(long id, String content) {
+		postTagService.addTags(Collections.singletonMap(id, content));
+	}
+
+}
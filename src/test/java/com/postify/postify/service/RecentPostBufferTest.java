@@ -0,0 +1,92 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.model.PostVM;
+import com.postify.postify.model.UserVM;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RecentPostBufferTest {
+	
+	RecentPostBuffer recentPostBuffer;
+	
+	@BeforeEach
+	public void init() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setRecentPostBufferSize(4);
+		recentPostBuffer = new RecentPostBuffer(appConfiguration);
+	}
+	
+	@Test
+	public void countNewer_whenNothingAppended_returnsNotCovered() {
+		assertThat(recentPostBuffer.countNewer(5, null)).isEqualTo(-1);
+	}
+	
+	@Test
+	public void countNewer_whenIdInsideWindow_returnsCountForUser() {
+		recentPostBuffer.append(createPost(10, 1));
+		recentPostBuffer.append(createPost(11, 2));
+		recentPostBuffer.append(createPost(12, 1));
+		assertThat(recentPostBuffer.countNewer(10, null)).isEqualTo(2);
+		assertThat(recentPostBuffer.countNewer(10, 1L)).isEqualTo(1);
+	}
+	
+	@Test
+	public void findNewer_whenIdOlderThanWindow_returnsNull() {
+		for(long id = 10; id <= 15; id++) {
+			recentPostBuffer.append(createPost(id, 1));
+		}
+		assertThat(recentPostBuffer.findNewer(10, null, false)).isNull();
+	}
+	
+	@Test
+	public void findNewer_whenPostRemoved_returnsRemainingPostsNewestFirst() {
+		recentPostBuffer.append(createPost(10, 1));
+		recentPostBuffer.append(createPost(11, 1));
+		recentPostBuffer.append(createPost(12, 1));
+		recentPostBuffer.remove(11);
+		List<PostVM> newer = recentPostBuffer.findNewer(9, null, false);
+		assertThat(newer).extracting(PostVM::getId).containsExactly(12L, 10L);
+	}
+	
+	@Test
+	public void findNewer_whenUserGiven_returnsOnlyThatUsersPosts() {
+		recentPostBuffer.append(createPost(10, 1));
+		recentPostBuffer.append(createPost(11, 2));
+		recentPostBuffer.append(createPost(12, 1));
+		List<PostVM> newer = recentPostBuffer.findNewer(9, 1L, true);
+		assertThat(newer).extracting(PostVM::getId).containsExactly(10L, 12L);
+	}
+	
+	@Test
+	public void findNewer_whenNotSingleNode_returnsNull() {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setSingleNode(false);
+		recentPostBuffer = new RecentPostBuffer(appConfiguration);
+		recentPostBuffer.append(createPost(10, 1));
+		assertThat(recentPostBuffer.findNewer(9, null, false)).isNull();
+		assertThat(recentPostBuffer.countNewer(9, null)).isEqualTo(-1);
+	}
+	
+	@Test
+	public void updateUser_whenUserHasBufferedPosts_replacesAuthor() {
+		recentPostBuffer.append(createPost(10, 1));
+		UserVM renamed = new UserVM(1, "user1", "renamed", null);
+		recentPostBuffer.updateUser(renamed);
+		assertThat(recentPostBuffer.findNewer(9, 1L, false).get(0).getUser().getDisplayName()).isEqualTo("renamed");
+	}
+	
+	private PostVM createPost(long id, long userId) {
+		UserVM user = new UserVM();
+		user.setId(userId);
+		PostVM post = new PostVM();
+		post.setId(id);
+		post.setUser(user);
+		return post;
+	}
+
+}
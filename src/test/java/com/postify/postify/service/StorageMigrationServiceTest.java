@@ -0,0 +1,70 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.util.StorageLayout;
+
+public class StorageMigrationServiceTest {
+
+	StorageMigrationService storageMigrationService;
+
+	AppConfiguration appConfiguration;
+
+	@BeforeEach
+	public void init() {
+		appConfiguration = new AppConfiguration();
+		appConfiguration.setUploadPath("uploads-test");
+
+		storageMigrationService = new StorageMigrationService(appConfiguration);
+
+		new File(appConfiguration.getUploadPath()).mkdir();
+		new File(appConfiguration.getFullProfileImagesPath()).mkdir();
+		new File(appConfiguration.getFullAttachmentsPath()).mkdir();
+	}
+
+	@Test
+	public void migrate_whenFlatFilesExist_movesThemIntoShardedFolders() throws IOException {
+		File source = new ClassPathResource("profile.png").getFile();
+		for(int i = 0; i < 20; i++) {
+			FileUtils.copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/attachment-" + i));
+		}
+		FileUtils.copyFile(source, new File(appConfiguration.getFullProfileImagesPath() + "/profile-image"));
+
+		int moved = storageMigrationService.migrate();
+
+		assertThat(moved).isEqualTo(21);
+		for(int i = 0; i < 20; i++) {
+			assertThat(StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), "attachment-" + i).toFile().exists()).isTrue();
+			assertThat(new File(appConfiguration.getFullAttachmentsPath() + "/attachment-" + i).exists()).isFalse();
+		}
+		assertThat(StorageLayout.shardedPath(appConfiguration.getFullProfileImagesPath(), "profile-image").toFile().exists()).isTrue();
+	}
+
+	@Test
+	public void migrate_whenUploadInProgress_leavesTemporaryFileInPlace() throws IOException {
+		File source = new ClassPathResource("profile.png").getFile();
+		File upload = new File(appConfiguration.getFullAttachmentsPath() + "/" + FileService.UPLOAD_PREFIX + "pending");
+		FileUtils.copyFile(source, upload);
+
+		storageMigrationService.migrate();
+
+		assertThat(upload.exists()).isTrue();
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
+		FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+	}
+
+}
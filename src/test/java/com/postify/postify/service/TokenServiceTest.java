@@ -0,0 +1,112 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.postify.postify.TestUtil;
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.User;
+import com.postify.postify.exception.UnauthorizedException;
+import com.postify.postify.model.AccessToken;
+import com.postify.postify.model.AuthUser;
+import com.postify.postify.repository.UserRepository;
+
+public class TokenServiceTest {
+
+	TokenService tokenService;
+
+	UserRepository userRepository;
+
+	User user;
+
+	@BeforeEach
+	public void init() {
+		userRepository = Mockito.mock(UserRepository.class);
+		tokenService = new TokenService(new AppConfiguration(), userRepository, new SimpleMeterRegistry());
+		user = TestUtil.createValidUser();
+		user.setId(5);
+		Mockito.when(userRepository.findById(5L)).thenReturn(Optional.of(user));
+	}
+
+	@Test
+	public void verifyToken_withValidToken_returnsUserWithProfileFields() {
+		AccessToken token = tokenService.createToken(new AuthUser(user));
+
+		AuthUser verified = tokenService.verifyToken(token.getToken());
+
+		assertThat(verified.getDisplayName()).isEqualTo(user.getDisplayName());
+		assertThat(verified.getImage()).isEqualTo(user.getImage());
+	}
+
+	@Test
+	public void verifyToken_afterCredentialVersionChanged_returnsNull() {
+		AccessToken token = tokenService.createToken(new AuthUser(user));
+		user.setCredentialVersion(user.getCredentialVersion() + 1);
+
+		assertThat(tokenService.verifyToken(token.getToken())).isNull();
+	}
+
+	@Test
+	public void verifyToken_whenUserCached_doesNotQueryRepository() {
+		AccessToken token = tokenService.createToken(new AuthUser(user));
+
+		tokenService.verifyToken(token.getToken());
+		tokenService.verifyToken(token.getToken());
+
+		Mockito.verify(userRepository, Mockito.times(1)).findById(5L);
+	}
+
+	@Test
+	public void verifyToken_afterInvalidate_rejectsTokenWithOldCredentialVersion() {
+		AccessToken token = tokenService.createToken(new AuthUser(user));
+		tokenService.verifyToken(token.getToken());
+		user.setCredentialVersion(user.getCredentialVersion() + 1);
+
+		tokenService.invalidate(5);
+
+		assertThat(tokenService.verifyToken(token.getToken())).isNull();
+	}
+
+	@Test
+	public void verifyToken_whenTokenNewerThanCachedUser_reloadsUser() {
+		tokenService.verifyToken(tokenService.createToken(new AuthUser(user)).getToken());
+		user.setCredentialVersion(user.getCredentialVersion() + 1);
+
+		AuthUser verified = tokenService.verifyToken(tokenService.createToken(new AuthUser(user)).getToken());
+
+		assertThat(verified.getCredentialVersion()).isEqualTo(user.getCredentialVersion());
+	}
+
+	@Test
+	public void refreshToken_keepsOriginalSessionStart() {
+		long sessionStartedAt = System.currentTimeMillis() - Duration.ofDays(1).toMillis();
+		AccessToken refreshed = tokenService.refreshToken(new AuthUser(user, sessionStartedAt));
+
+		assertThat(tokenService.verifyToken(refreshed.getToken()).getSessionStartedAt()).isEqualTo(sessionStartedAt);
+	}
+
+	@Test
+	public void refreshToken_whenSessionOlderThanMaxAge_throwsUnauthorized() {
+		long sessionStartedAt = System.currentTimeMillis() - Duration.ofDays(8).toMillis();
+
+		assertThatThrownBy(() -> tokenService.refreshToken(new AuthUser(user, sessionStartedAt)))
+			.isInstanceOf(UnauthorizedException.class);
+	}
+
+	@Test
+	public void refreshToken_nearMaxSessionAge_expiresWithSession() {
+		long sessionStartedAt = System.currentTimeMillis() - Duration.ofDays(7).minusMinutes(10).toMillis();
+		AccessToken refreshed = tokenService.refreshToken(new AuthUser(user, sessionStartedAt));
+
+		assertThat(refreshed.getExpiresAt()).isEqualTo(sessionStartedAt + Duration.ofDays(7).toMillis());
+	}
+
+}
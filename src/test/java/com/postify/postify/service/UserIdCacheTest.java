@@ -0,0 +1,88 @@
+package com.postify.postify.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import com.postify.postify.TestUtil;
+import com.postify.postify.configuration.AppConfiguration;
+import com.postify.postify.entity.User;
+import com.postify.postify.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UserIdCacheTest {
+	
+	UserRepository userRepository;
+	
+	UserIdCache userIdCache;
+	
+	@BeforeEach
+	public void init() {
+		userRepository = mock(UserRepository.class);
+		userIdCache = new UserIdCache(new AppConfiguration(), userRepository, new SimpleMeterRegistry());
+	}
+	
+	@Test
+	public void findId_whenCalledTwice_queriesRepositoryOnce() {
+		when(userRepository.findIdByUsername("user1")).thenReturn(5L);
+		userIdCache.findId("user1");
+		assertThat(userIdCache.findId("user1")).isEqualTo(5L);
+		verify(userRepository, times(1)).findIdByUsername("user1");
+	}
+	
+	@Test
+	public void findId_whenUserDoesNotExist_cachesMiss() {
+		userIdCache.findId("unknown-user");
+		assertThat(userIdCache.findId("unknown-user")).isNull();
+		verify(userRepository, times(1)).findIdByUsername("unknown-user");
+	}
+	
+	@Test
+	public void findId_whenMissExpired_queriesRepositoryAgain() throws InterruptedException {
+		AppConfiguration appConfiguration = new AppConfiguration();
+		appConfiguration.setUserIdMissTtl(Duration.ofMillis(1));
+		userIdCache = new UserIdCache(appConfiguration, userRepository, new SimpleMeterRegistry());
+		userIdCache.findId("user1");
+		Thread.sleep(5);
+		when(userRepository.findIdByUsername("user1")).thenReturn(5L);
+		assertThat(userIdCache.findId("user1")).isEqualTo(5L);
+	}
+	
+	@Test
+	public void findUser_whenIdNotCached_loadsUserWithSingleQuery() {
+		User user = TestUtil.createValidUser("user1");
+		user.setId(5);
+		when(userRepository.findByUsername("user1")).thenReturn(user);
+		assertThat(userIdCache.findUser("user1")).isSameAs(user);
+		verify(userRepository, never()).findById(5L);
+		verify(userRepository, never()).findIdByUsername("user1");
+	}
+	
+	@Test
+	public void findUser_whenIdCached_loadsUserById() {
+		User user = TestUtil.createValidUser("user1");
+		user.setId(5);
+		when(userRepository.findIdByUsername("user1")).thenReturn(5L);
+		when(userRepository.findById(5L)).thenReturn(Optional.of(user));
+		userIdCache.findId("user1");
+		assertThat(userIdCache.findUser("user1")).isSameAs(user);
+		verify(userRepository, never()).findByUsername("user1");
+	}
+	
+	@Test
+	public void findId_afterInvalidate_queriesRepositoryAgain() {
+		userIdCache.findId("user1");
+		when(userRepository.findIdByUsername("user1")).thenReturn(5L);
+		userIdCache.invalidate("user1");
+		assertThat(userIdCache.findId("user1")).isEqualTo(5L);
+	}
+
+}
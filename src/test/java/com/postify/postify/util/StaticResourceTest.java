@@ -2,10 +2,12 @@ package com.postify.postify.util;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -80,6 +82,18 @@ public class StaticResourceTest {
 		
 	}
 	
+	@Test
+	public void getStaticFile_whenImageExistInShardedAttachmentFolder_receiveOk() throws Exception {
+		String fileName = "profile-picture.png";
+		File source = new ClassPathResource("profile.png").getFile();
+		
+		File target = StorageLayout.shardedPath(appConfiguration.getFullAttachmentsPath(), fileName).toFile();
+		FileUtils.copyFile(source, target);
+		
+		mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/"+fileName)).andExpect(status().isOk());
+		
+	}
+	
 	@Test
 	public void getStaticFile_whenImageDoesNotExist_receiveNotFound() throws Exception {
 		mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/there-is-no-such-image.png"))
@@ -101,6 +115,67 @@ public class StaticResourceTest {
 		
 	}
 	
+	@Test
+	public void getStaticFile_withRangeHeader_receivePartialContent() throws Exception {
+		File target = copyToAttachments("profile-picture.png");
+		
+		mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/profile-picture.png").header("Range", "bytes=0-9"))
+			.andExpect(status().isPartialContent())
+			.andExpect(header().string("Content-Range", "bytes 0-9/" + target.length()))
+			.andExpect(header().longValue("Content-Length", 10));
+	}
+	
+	@Test
+	public void getStaticFile_withSuffixRangeHeader_receiveLastBytes() throws Exception {
+		File target = copyToAttachments("profile-picture.png");
+		
+		MvcResult result = mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/profile-picture.png").header("Range", "bytes=-16"))
+			.andExpect(status().isPartialContent()).andReturn();
+		
+		byte[] content = FileUtils.readFileToByteArray(target);
+		assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, content.length - 16, content.length));
+	}
+	
+	@Test
+	public void getStaticFile_withRangeBeyondFileSize_receiveRangeNotSatisfiable() throws Exception {
+		File target = copyToAttachments("profile-picture.png");
+		
+		mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/profile-picture.png").header("Range", "bytes=" + target.length() + "-"))
+			.andExpect(status().isRequestedRangeNotSatisfiable())
+			.andExpect(header().string("Content-Range", "bytes */" + target.length()));
+	}
+	
+	@Test
+	public void getStaticFile_withStaleIfRange_receiveFullContent() throws Exception {
+		copyToAttachments("profile-picture.png");
+		
+		mockMvc.perform(get("/images/"+appConfiguration.getAttachmentsFolder()+"/profile-picture.png")
+				.header("Range", "bytes=0-9").header("If-Range", "\"stale\""))
+			.andExpect(status().isOk());
+	}
+	
+	@Test
+	public void getStaticFile_withMatchingIfNoneMatch_receiveNotModified() throws Exception {
+		copyToAttachments("profile-picture.png");
+		String path = "/images/"+appConfiguration.getAttachmentsFolder()+"/profile-picture.png";
+		
+		String eTag = mockMvc.perform(get(path)).andReturn().getResponse().getHeader("ETag");
+		
+		mockMvc.perform(get(path).header("If-None-Match", eTag)).andExpect(status().isNotModified());
+	}
+	
+	@Test
+	public void getStaticFile_whenFolderIsNotAnUploadFolder_receiveNotFound() throws Exception {
+		mockMvc.perform(get("/images/other/profile-picture.png")).andExpect(status().isNotFound());
+	}
+	
+	private File copyToAttachments(String fileName) throws IOException {
+		File source = new ClassPathResource("profile.png").getFile();
+		File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+		return target;
+	}
+	
 	@AfterEach
 	public void cleanup() throws IOException {
 		FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
@@ -0,0 +1,59 @@
+package com.postify.postify.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class TimeOrderedIdGeneratorTest {
+	
+	@Test
+	public void nextId_whenCalledRepeatedly_returnsIncreasingIds() {
+		TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0);
+		long previous = generator.nextId();
+		for(int i = 0; i < 10000; i++) {
+			long next = generator.nextId();
+			assertThat(next).isGreaterThan(previous);
+			previous = next;
+		}
+	}
+	
+	@Test
+	public void nextId_whenCalledConcurrently_returnsUniqueIds() {
+		TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(3);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		IntStream.range(0, 100000).parallel().forEach(i -> ids.add(generator.nextId()));
+		assertThat(ids).hasSize(100000);
+	}
+	
+	@Test
+	public void nextId_whenGenerated_fitsInJavaScriptSafeInteger() {
+		TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(15);
+		assertThat(generator.nextId()).isLessThan(1L << 53);
+	}
+	
+	@Test
+	public void nextId_whenNodesDiffer_returnsDifferentIds() {
+		TimeOrderedIdGenerator first = new TimeOrderedIdGenerator(1);
+		TimeOrderedIdGenerator second = new TimeOrderedIdGenerator(2);
+		assertThat(first.nextId()).isNotEqualTo(second.nextId());
+	}
+	
+	@Test
+	public void nextId_whenOneIdPerMillisecond_spreadsEvenlyOverCleanupPartitions() {
+		AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+		TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(0, clock::getAndIncrement);
+		int partitions = 4;
+		int[] counts = new int[partitions];
+		for(int i = 0; i < 400; i++) {
+			long id = generator.nextId();
+			counts[(int) ((id / TimeOrderedIdGenerator.MILLIS_UNIT) % partitions)]++;
+		}
+		assertThat(counts).containsOnly(100);
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.postify.postify.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+	private static final long START = 1_600_000_000_000L;
+
+	@Test
+	public void advance_beforeDeadline_returnsNothing() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 60, START);
+		wheel.schedule("upload", START + 5000);
+
+		assertThat(wheel.advance(START + 4999)).isEmpty();
+	}
+
+	@Test
+	public void advance_pastDeadline_returnsExpiredKeyOnce() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 60, START);
+		wheel.schedule("upload", START + 5000);
+
+		assertThat(wheel.advance(START + 6000)).containsExactly("upload");
+		assertThat(wheel.advance(START + 7000)).isEmpty();
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	public void advance_whenDeadlineIsOnAnOverflowWheel_expiresWithinOneTick() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 60, START);
+		long deadline = START + 60 * 60 * 1000 + 1500;
+		wheel.schedule("upload", deadline);
+
+		assertThat(wheel.advance(deadline - 1)).isEmpty();
+		assertThat(wheel.advance(deadline + 1000)).containsExactly("upload");
+	}
+
+	@Test
+	public void advance_withManyDeadlines_expiresThemInDeadlineOrderOfTicks() {
+		TimingWheel<Integer> wheel = new TimingWheel<>(1000, 60, START);
+		for(int i = 0; i < 200; i++) {
+			wheel.schedule(i, START + i * 37_000L);
+		}
+
+		for(int i = 0; i < 200; i++) {
+			long deadline = START + i * 37_000L;
+			assertThat(wheel.advance(deadline - 1)).doesNotContain(i);
+			assertThat(wheel.advance(deadline + 1000)).contains(i);
+		}
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	public void cancel_beforeDeadline_preventsExpiry() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 60, START);
+		wheel.schedule("upload", START + 120_000);
+		wheel.cancel("upload");
+
+		assertThat(wheel.advance(START + 200_000)).isEmpty();
+	}
+
+	@Test
+	public void schedule_whenDeadlineAlreadyPassed_expiresOnNextTick() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 60, START);
+		wheel.schedule("upload", START - 10_000);
+
+		assertThat(wheel.advance(START + 1000)).containsExactly("upload");
+	}
+
+}